@@ -0,0 +1,74 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * spins, then yields, then parks for exponentially longer periods up to a maximum,
+ * so an idle consumer costs almost nothing without the producers ever having to wake it
+ */
+public final class BackoffWaitStrategy implements WaitStrategy {
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+
+    private final long minParkNanos;
+    private final long maxParkNanos;
+
+    public BackoffWaitStrategy() {
+        this(1000, 1000 * 1000);
+    }
+
+    public BackoffWaitStrategy(long minParkNanos, long maxParkNanos) {
+        this.minParkNanos = minParkNanos;
+        this.maxParkNanos = maxParkNanos;
+    }
+
+    @Override
+    public boolean waitFor(Pollable pollable, long timeoutNanos) throws InterruptedException {
+        long start = System.nanoTime();
+        int counter = SPIN_TRIES + YIELD_TRIES;
+        long parkNanos = minParkNanos;
+
+        while (pollable.isEmpty()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+
+            long remaining = timeoutNanos - (System.nanoTime() - start);
+            if (remaining <= 0) {
+                return false;
+            }
+
+            if (counter > YIELD_TRIES) {
+                counter--;
+                Thread.onSpinWait();
+            } else if (counter > 0) {
+                counter--;
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(Math.min(parkNanos, remaining));
+                parkNanos = Math.min(parkNanos * 2, maxParkNanos);
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public void signalAllWhenBlocking() {
+    }
+
+}
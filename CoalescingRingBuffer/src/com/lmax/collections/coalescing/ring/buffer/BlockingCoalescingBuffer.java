@@ -0,0 +1,35 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * a {@link CoalescingBuffer} whose consumer can wait for values with the buffer's {@link WaitStrategy}
+ */
+public interface BlockingCoalescingBuffer<K, V> extends CoalescingBuffer<K, V> {
+
+    /**
+     * waits up to the timeout for values and returns the number polled, 0 if none arrived in time
+     */
+    int poll(Collection<? super V> bucket, long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * waits for as long as it takes for at least one value
+     */
+    int take(Collection<? super V> bucket) throws InterruptedException;
+
+}
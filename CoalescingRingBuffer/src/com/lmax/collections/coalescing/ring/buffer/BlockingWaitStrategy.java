@@ -0,0 +1,76 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Parks the consumer on a condition until a producer signals it. Producers only take the lock when a
+ * consumer has registered as waiting, so appending to a buffer nobody is waiting on stays lock free.
+ */
+public final class BlockingWaitStrategy implements WaitStrategy {
+    private final Lock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final AtomicInteger waiters = new AtomicInteger(0);
+
+    @Override
+    public boolean waitFor(Pollable pollable, long timeoutNanos) throws InterruptedException {
+        if (!pollable.isEmpty()) {
+            return true;
+        }
+
+        long nanos = timeoutNanos;
+        lock.lock();
+
+        try {
+            waiters.incrementAndGet(); // must be visible before re-checking, or a producer could miss us
+
+            try {
+                while (pollable.isEmpty()) {
+                    if (nanos <= 0) {
+                        return false;
+                    }
+
+                    nanos = notEmpty.awaitNanos(nanos);
+                }
+
+                return true;
+            } finally {
+                waiters.decrementAndGet();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void signalAllWhenBlocking() {
+        if (waiters.get() == 0) {
+            return;
+        }
+
+        lock.lock();
+
+        try {
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
@@ -0,0 +1,45 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+/**
+ * lowest latency, but burns a whole core for as long as the consumer waits
+ */
+public final class BusySpinWaitStrategy implements WaitStrategy {
+
+    @Override
+    public boolean waitFor(Pollable pollable, long timeoutNanos) throws InterruptedException {
+        long start = System.nanoTime();
+
+        while (pollable.isEmpty()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+
+            if (System.nanoTime() - start >= timeoutNanos) {
+                return false;
+            }
+
+            Thread.onSpinWait();
+        }
+
+        return true;
+    }
+
+    @Override
+    public void signalAllWhenBlocking() {
+    }
+
+}
@@ -16,10 +16,16 @@ package com.lmax.collections.coalescing.ring.buffer;
 
 import java.util.Collection;
 
-public interface CoalescingBuffer<K, V> {
+public interface CoalescingBuffer<K, V> extends Pollable {
 
     boolean offer(K key, V value);
 
     int poll(Collection<? super V> bucket);
 
+    int poll(Collection<? super V> bucket, int maxElements);
+
+    int poll(V[] values, int offset, int maxElements);
+
+    int poll(ValueHandler<? super K, ? super V> handler);
+
 }
\ No newline at end of file
@@ -1,9 +1,188 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
 package com.lmax.collections.coalescing.ring.buffer;
 
-public class CoalescingBufferFactory {
+/**
+ * Picks the fastest buffer that meets what the caller needs, so nobody shares the single writer ring between
+ * producers by accident or pays for a lock they do not need:
+ * <pre>
+ *     CoalescingBuffer&lt;Long, Price&gt; prices = CoalescingBufferFactory.&lt;Long, Price&gt;builder()
+ *             .multipleProducers()
+ *             .capacity(1024)
+ *             .build();
+ * </pre>
+ * The terminal method chooses the key type: {@link Builder#build()} for object keys,
+ * {@link Builder#buildForLongKeys()} and {@link Builder#buildForDenseIntKeys(int)} for primitive ones.
+ * A combination no implementation supports fails the build with an {@link IllegalStateException}.
+ */
+public final class CoalescingBufferFactory {
+
+    private CoalescingBufferFactory() {
+    }
+
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<K, V>();
+    }
 
+    /**
+     * @deprecated use {@link #builder()}, which picks the implementation from what the caller needs
+     */
+    @Deprecated
     public static <K,V> CoalescingBuffer<K,V> create(int capacity) {
         return new CoalescingRingBuffer<K, V>(capacity);
     }
 
-}
\ No newline at end of file
+    public static final class Builder<K, V> {
+        private boolean multipleProducers = false;
+        private int capacity = 1024;
+        private int maxCapacity = 0; // 0 for a buffer that never grows
+        private OverflowPolicy overflowPolicy = OverflowPolicy.REJECT;
+        private WaitStrategy waitStrategy; // null if the consumer never waits on the buffer
+        private boolean statistics = false;
+
+        private Builder() {
+        }
+
+        /**
+         * the default, only one thread may then ever offer to the buffer, whatever the keys,
+         * so use {@link #multipleProducers()} if a second thread might
+         */
+        public Builder<K, V> singleProducer() {
+            this.multipleProducers = false;
+            return this;
+        }
+
+        public Builder<K, V> multipleProducers() {
+            this.multipleProducers = true;
+            return this;
+        }
+
+        public Builder<K, V> capacity(int capacity) {
+            if (capacity < 1) {
+                throw new IllegalArgumentException("capacity must be positive, not " + capacity);
+            }
+
+            if (maxCapacity != 0 && maxCapacity <= capacity) {
+                throw new IllegalArgumentException("capacity " + capacity + " leaves no room to grow to " + maxCapacity);
+            }
+
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * starts at {@link #capacity} and grows as far as maxCapacity when the producer fills it,
+         * so maxCapacity must be above the capacity
+         */
+        public Builder<K, V> growable(int maxCapacity) {
+            if (maxCapacity <= capacity) {
+                throw new IllegalArgumentException("maximum capacity must be above the capacity of " + capacity + ", not " + maxCapacity);
+            }
+
+            this.maxCapacity = maxCapacity;
+            return this;
+        }
+
+        public Builder<K, V> overflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * how the consumer waits in {@link BlockingCoalescingBuffer#take} and the timed poll,
+         * leave it unset if the consumer only ever polls
+         */
+        public Builder<K, V> waitStrategy(WaitStrategy waitStrategy) {
+            this.waitStrategy = waitStrategy;
+            return this;
+        }
+
+        /**
+         * makes the buffer implement {@link CoalescingBufferStatistics}
+         */
+        public Builder<K, V> statistics(boolean statistics) {
+            this.statistics = statistics;
+            return this;
+        }
+
+        public CoalescingBuffer<K, V> build() {
+            if (waitStrategy == null && !multipleProducers && !isGrowable() && overflowPolicy == OverflowPolicy.REJECT && !statistics) {
+                return new CoalescingVarHandleRingBuffer<K, V>(capacity);
+            }
+
+            return buildBlocking();
+        }
+
+        /**
+         * as {@link #build()}, with a consumer that can wait, busy spinning if no wait strategy was given
+         */
+        public BlockingCoalescingBuffer<K, V> buildBlocking() {
+            WaitStrategy waitStrategy = this.waitStrategy == null ? new BusySpinWaitStrategy() : this.waitStrategy;
+
+            if (multipleProducers) {
+                require(!isGrowable(), "a multi producer buffer cannot grow");
+                require(overflowPolicy == OverflowPolicy.REJECT, "a multi producer buffer only supports OverflowPolicy.REJECT");
+                require(!statistics, "a multi producer buffer does not keep statistics");
+
+                return new CoalescingMultiWriterBuffer<K, V>(capacity, waitStrategy);
+            }
+
+            if (isGrowable()) {
+                require(overflowPolicy == OverflowPolicy.REJECT, "a growable buffer only supports OverflowPolicy.REJECT");
+                require(!statistics, "a growable buffer does not keep statistics");
+
+                return new CoalescingGrowableRingBuffer<K, V>(capacity, maxCapacity, waitStrategy);
+            }
+
+            if (overflowPolicy != OverflowPolicy.REJECT || statistics) {
+                return new CoalescingRingBuffer<K, V>(capacity, waitStrategy, overflowPolicy);
+            }
+
+            return new CoalescingPaddedRingBuffer<K, V>(capacity, waitStrategy);
+        }
+
+        public LongCoalescingBuffer<V> buildForLongKeys() {
+            require(!multipleProducers, "a long keyed buffer only supports a single producer");
+            require(!isGrowable(), "a long keyed buffer cannot grow");
+            require(overflowPolicy == OverflowPolicy.REJECT, "a long keyed buffer only supports OverflowPolicy.REJECT");
+            require(waitStrategy == null, "a long keyed buffer cannot be waited on");
+            require(!statistics, "a long keyed buffer does not keep statistics");
+
+            return new LongCoalescingRingBuffer<V>(capacity);
+        }
+
+        /**
+         * for keys in [0, numberOfKeys), which never fills up, so the capacity and overflow policy do not apply,
+         * and which any number of producers may offer to
+         */
+        public IntCoalescingBuffer<V> buildForDenseIntKeys(int numberOfKeys) {
+            require(waitStrategy == null, "a dense int keyed buffer cannot be waited on");
+            require(!statistics, "a dense int keyed buffer does not keep statistics");
+
+            return new DenseKeyCoalescingBuffer<V>(numberOfKeys);
+        }
+
+        private boolean isGrowable() {
+            return maxCapacity > capacity;
+        }
+
+        private static void require(boolean condition, String message) {
+            if (!condition) {
+                throw new IllegalStateException(message);
+            }
+        }
+    }
+
+}
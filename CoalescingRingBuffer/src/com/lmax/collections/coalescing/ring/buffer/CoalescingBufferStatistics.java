@@ -0,0 +1,72 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+/**
+ * Running totals kept by a buffer. Each count is written by only one side, producer or consumer,
+ * so reading them from any other thread is safe but may be slightly behind.
+ * offers() == coalescedUpdates() + appends() + rejections() + spills().
+ */
+public interface CoalescingBufferStatistics {
+
+    long offers();
+
+    /**
+     * offers that replaced the value of a key that had not been read yet
+     */
+    long coalescedUpdates();
+
+    /**
+     * offers that took a new slot
+     */
+    long appends();
+
+    /**
+     * offers turned away because the buffer was full
+     */
+    long rejections();
+
+    /**
+     * offers that found the buffer full, whatever the overflow policy then did with them
+     */
+    long overflows();
+
+    /**
+     * unread values dropped by {@link OverflowPolicy#EVICT_OLDEST}
+     */
+    long evictions();
+
+    /**
+     * offers taken by the overflow ring of {@link OverflowPolicy#SPILL}, counted here rather than as coalesced updates or appends
+     */
+    long spills();
+
+    /**
+     * calls to any of the poll methods, including those that found nothing
+     */
+    long polls();
+
+    long elementsDrained();
+
+    int size();
+
+    /**
+     * the largest size the producer has seen since the buffer was created
+     */
+    int highWaterMark();
+
+    int capacity();
+
+}
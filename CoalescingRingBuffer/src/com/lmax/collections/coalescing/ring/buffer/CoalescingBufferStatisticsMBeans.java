@@ -0,0 +1,102 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Publishes buffer statistics on the platform MBean server under
+ * {@code com.lmax.collections.coalescing:type=CoalescingBuffer,name=<name>}.
+ */
+public final class CoalescingBufferStatisticsMBeans {
+
+    private static final String DOMAIN = "com.lmax.collections.coalescing";
+
+    private CoalescingBufferStatisticsMBeans() {
+    }
+
+    public static ObjectName register(String name, CoalescingBufferStatistics statistics) throws JMException {
+        ObjectName objectName = objectName(name);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new StatisticsMXBean(statistics), objectName);
+        return objectName;
+    }
+
+    public static void unregister(String name) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName(name));
+    }
+
+    public static ObjectName objectName(String name) throws JMException {
+        return new ObjectName(DOMAIN + ":type=CoalescingBuffer,name=" + ObjectName.quote(name));
+    }
+
+    private static final class StatisticsMXBean implements CoalescingBufferStatisticsMXBean {
+        private final CoalescingBufferStatistics statistics;
+
+        private StatisticsMXBean(CoalescingBufferStatistics statistics) {
+            this.statistics = statistics;
+        }
+
+        @Override public long getOffers() {
+            return statistics.offers();
+        }
+
+        @Override public long getCoalescedUpdates() {
+            return statistics.coalescedUpdates();
+        }
+
+        @Override public long getAppends() {
+            return statistics.appends();
+        }
+
+        @Override public long getRejections() {
+            return statistics.rejections();
+        }
+
+        @Override public long getOverflows() {
+            return statistics.overflows();
+        }
+
+        @Override public long getEvictions() {
+            return statistics.evictions();
+        }
+
+        @Override public long getSpills() {
+            return statistics.spills();
+        }
+
+        @Override public long getPolls() {
+            return statistics.polls();
+        }
+
+        @Override public long getElementsDrained() {
+            return statistics.elementsDrained();
+        }
+
+        @Override public int getSize() {
+            return statistics.size();
+        }
+
+        @Override public int getHighWaterMark() {
+            return statistics.highWaterMark();
+        }
+
+        @Override public int getCapacity() {
+            return statistics.capacity();
+        }
+    }
+
+}
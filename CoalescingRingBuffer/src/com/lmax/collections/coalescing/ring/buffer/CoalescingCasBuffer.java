@@ -2,6 +2,7 @@ package com.lmax.collections.coalescing.ring.buffer;
 
 import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
 
 @SuppressWarnings("unchecked")
@@ -15,6 +16,10 @@ public class CoalescingCasBuffer<K,V> implements CoalescingBuffer<K,V> {
         atomicReference.set(new LinkedHashMap<K, V>(capacity));
     }
 
+    @Override public boolean isEmpty() {
+        return atomicReference.get().isEmpty();
+    }
+
     @Override public boolean offer(K key, V value) {
         boolean success = false;
 
@@ -48,4 +53,52 @@ public class CoalescingCasBuffer<K,V> implements CoalescingBuffer<K,V> {
         return map.size();
     }
 
+    @Override public int poll(Collection<? super V> bucket, int maxElements) {
+        PollLimits.checkMaxElements(maxElements);
+        LinkedHashMap<K, V> map = take(maxElements);
+        bucket.addAll(map.values());
+        return map.size();
+    }
+
+    @Override public int poll(V[] values, int offset, int maxElements) {
+        LinkedHashMap<K, V> map = take(PollLimits.maxValues(values, offset, maxElements));
+
+        for (V value : map.values()) {
+            values[offset++] = value;
+        }
+
+        return map.size();
+    }
+
+    @Override public int poll(ValueHandler<? super K, ? super V> handler) {
+        LinkedHashMap<K, V> map = atomicReference.getAndSet(new LinkedHashMap<K, V>(capacity));
+        int remaining = map.size();
+
+        for (Map.Entry<K, V> entry : map.entrySet()) {
+            handler.onValue(entry.getKey(), entry.getValue(), --remaining == 0);
+        }
+
+        return map.size();
+    }
+
+    private LinkedHashMap<K, V> take(int maxElements) {
+        while (true) {
+            LinkedHashMap<K, V> current = atomicReference.get();
+            LinkedHashMap<K, V> taken = new LinkedHashMap<K, V>(capacity);
+            LinkedHashMap<K, V> remaining = new LinkedHashMap<K, V>(capacity);
+
+            for (Map.Entry<K, V> entry : current.entrySet()) {
+                if (taken.size() < maxElements) {
+                    taken.put(entry.getKey(), entry.getValue());
+                } else {
+                    remaining.put(entry.getKey(), entry.getValue());
+                }
+            }
+
+            if (atomicReference.compareAndSet(current, remaining)) {
+                return taken;
+            }
+        }
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,217 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the loop a consumer would otherwise write by hand: drains its buffers in turn into one handler, with
+ * endOfBatch on the last value of each round, and waits with the wait strategy while they are all empty.
+ * <p>
+ * The loop runs either on a thread of its own from a {@link ThreadFactory}, which is where a thread can be pinned
+ * or given a priority, or as a task on an {@link Executor}, such as one that starts a virtual thread per task.
+ * On an executor a parking strategy like {@link BlockingWaitStrategy} or {@link BackoffWaitStrategy} keeps an idle
+ * dispatcher from holding on to a thread. Producers only wake a {@link BlockingWaitStrategy} if their buffers
+ * were created with the same instance. Stopping wakes the wait without an interrupt, so none can reach the handler,
+ * or a pool thread the loop has handed back.
+ * <p>
+ * An exception thrown by the handler ends the loop and is left to the thread or the executor to report.
+ */
+public final class CoalescingDispatcher<K, V> {
+
+    private static final int IDLE = 0;
+    private static final int RUNNING = 1;
+    private static final int SHUTTING_DOWN = 2; // drains the buffers, then stops
+    private static final int HALTED = 3; // stops after the current round
+    private static final int TERMINATED = 4;
+
+    private final CoalescingBuffer<K, V>[] buffers;
+    private final ValueHandler<? super K, ? super V> handler;
+    private final WaitStrategy waitStrategy;
+    private final DeferringValueHandler<K, V> deferringHandler = new DeferringValueHandler<K, V>();
+
+    private final AtomicInteger state = new AtomicInteger(IDLE);
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private volatile Thread runner; // the thread running the loop
+
+    private final Pollable anyBuffer = new Pollable() {
+        @Override
+        public boolean isEmpty() {
+            if (state.get() != RUNNING) {
+                return false; // so that a stop ends the wait as values would
+            }
+
+            for (CoalescingBuffer<K, V> buffer : buffers) {
+                if (!buffer.isEmpty()) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    };
+
+    private final Runnable loop = new Runnable() {
+        @Override
+        public void run() {
+            CoalescingDispatcher.this.run();
+        }
+    };
+
+    public CoalescingDispatcher(ValueHandler<? super K, ? super V> handler, WaitStrategy waitStrategy, CoalescingBuffer<K, V> buffer) {
+        this(handler, waitStrategy, Collections.singletonList(buffer));
+    }
+
+    /**
+     * the buffers are drained in list order each round
+     */
+    public CoalescingDispatcher(ValueHandler<? super K, ? super V> handler, WaitStrategy waitStrategy, List<? extends CoalescingBuffer<K, V>> buffers) {
+        if (buffers.isEmpty()) {
+            throw new IllegalArgumentException("a dispatcher needs at least one buffer");
+        }
+
+        this.handler = handler;
+        this.waitStrategy = waitStrategy;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        CoalescingBuffer<K, V>[] array = buffers.toArray(new CoalescingBuffer[buffers.size()]); // an array, so the loop does not allocate an iterator
+        this.buffers = array;
+    }
+
+    /**
+     * runs the loop on a new thread from the factory, and returns that thread once it has been started
+     */
+    public Thread start(ThreadFactory threadFactory) {
+        Thread thread = threadFactory.newThread(loop);
+        begin();
+        thread.start();
+
+        return thread;
+    }
+
+    /**
+     * runs the loop as a task on the executor, named apart from {@link #start(ThreadFactory)} so that a lambda can call either
+     */
+    public void startOn(Executor executor) {
+        begin();
+        executor.execute(loop);
+    }
+
+    private void begin() {
+        if (!state.compareAndSet(IDLE, RUNNING)) {
+            throw new IllegalStateException("dispatcher has already been started");
+        }
+    }
+
+    /**
+     * stops once the current round has been handled, anything still in the buffers stays there
+     */
+    public void halt() {
+        stop(HALTED);
+    }
+
+    /**
+     * stops once the buffers are empty, so everything offered before this call gets handled
+     */
+    public void shutdown() {
+        stop(SHUTTING_DOWN);
+    }
+
+    public boolean isRunning() {
+        return state.get() == RUNNING;
+    }
+
+    public boolean isTerminated() {
+        return state.get() == TERMINATED;
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    private void stop(int stopState) {
+        while (true) {
+            int current = state.get();
+
+            if (current == IDLE) {
+                if (state.compareAndSet(IDLE, TERMINATED)) {
+                    terminated.countDown();
+                    return;
+                }
+            } else if (current >= stopState) {
+                return;
+            } else if (state.compareAndSet(current, stopState)) {
+                break;
+            }
+        }
+
+        waitStrategy.signalAllWhenBlocking(); // the state is set first, so a waiter that misses this sees it instead
+        LockSupport.unpark(runner); // cuts short a backoff park, at worst a spurious wake up for whoever parks next
+    }
+
+    private void run() {
+        runner = Thread.currentThread();
+
+        try {
+            while (state.get() == RUNNING) {
+                if (pollAll() == 0) {
+                    awaitValues();
+                }
+            }
+
+            if (state.get() == SHUTTING_DOWN) {
+                while (pollAll() != 0) {
+                    // keep going until a round finds every buffer empty
+                }
+            }
+        } finally {
+            runner = null;
+            state.set(TERMINATED);
+            terminated.countDown();
+        }
+    }
+
+    private void awaitValues() {
+        try {
+            waitStrategy.waitFor(anyBuffer, Long.MAX_VALUE);
+        } catch (InterruptedException e) {
+            state.compareAndSet(RUNNING, HALTED); // stop() never interrupts, so this is an executor shutting down
+        }
+    }
+
+    private int pollAll() {
+        if (buffers.length == 1) {
+            return buffers[0].poll(handler);
+        }
+
+        deferringHandler.start(handler);
+        int count = 0;
+
+        for (CoalescingBuffer<K, V> buffer : buffers) {
+            count += buffer.poll(deferringHandler);
+        }
+
+        deferringHandler.flush();
+        return count;
+    }
+
+}
@@ -0,0 +1,346 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A {@link CoalescingRingBuffer} that starts with small arrays and swaps in arrays twice the size when the
+ * producer fills them, up to a maximum capacity. Once the consumer has kept the buffer at most a quarter full
+ * for as many appends as the arrays hold, they are halved again, but never below the initial capacity.
+ * <p>
+ * A resize never copies a value the consumer might be reading. The producer links a new ring behind the current
+ * one, starting at nextWrite, and appends there from then on. The consumer follows the link once its read index
+ * reaches the new ring's start, and the producer drops the old ring once lastRead has passed it. Between resizes
+ * both sides work on a single ring, just as the fixed size buffer does.
+ */
+public final class CoalescingGrowableRingBuffer<K, V> implements BlockingCoalescingBuffer<K, V> {
+
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    private volatile long nextWrite = 1; // the next write index
+    private long lastCleaned = 0; // the last index that was nulled out by the producer
+    private final AtomicLong rejectionCount = new AtomicLong(0);
+    private Ring<K, V> producerRing; // the ring the producer appends to
+    private Ring<K, V> oldestRing; // the oldest ring the consumer may not have finished with, only touched by the producer
+    private int quietAppends = 0; // appends in a row that found the buffer at most a quarter full
+
+    private final int initialCapacity;
+    private final int maxCapacity;
+    private final WaitStrategy waitStrategy;
+    private volatile int capacity; // the capacity of the producer's ring
+
+    private volatile long firstWrite = 1; // the oldest slot that is is safe to write to
+    private final AtomicLong lastRead = new AtomicLong(0); // the newest slot that it is safe to overwrite
+    private Ring<K, V> consumerRing; // the ring the consumer last read from, only touched by the consumer
+
+    public CoalescingGrowableRingBuffer(int maxCapacity) {
+        this(Math.min(DEFAULT_INITIAL_CAPACITY, maxCapacity), maxCapacity);
+    }
+
+    public CoalescingGrowableRingBuffer(int initialCapacity, int maxCapacity) {
+        this(initialCapacity, maxCapacity, new BusySpinWaitStrategy());
+    }
+
+    public CoalescingGrowableRingBuffer(int initialCapacity, int maxCapacity, WaitStrategy waitStrategy) {
+        if (initialCapacity > maxCapacity) {
+            throw new IllegalArgumentException("initial capacity " + initialCapacity + " is larger than the maximum " + maxCapacity);
+        }
+
+        this.initialCapacity = nextPowerOfTwo(initialCapacity);
+        this.maxCapacity = nextPowerOfTwo(maxCapacity);
+        this.waitStrategy = waitStrategy;
+        this.capacity = this.initialCapacity;
+
+        this.producerRing = new Ring<K, V>(1, this.initialCapacity);
+        this.oldestRing = producerRing;
+        this.consumerRing = producerRing;
+    }
+
+    private int nextPowerOfTwo(int value) {
+        return 1 << (32 - Integer.numberOfLeadingZeros(value - 1));
+    }
+
+    public int size() {
+        return (int) (nextWrite - lastRead.get() - 1);
+    }
+
+    @Override public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean isFull() {
+        return size() == maxCapacity;
+    }
+
+    /**
+     * the number of values the buffer can hold before it next has to grow
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    public int maxCapacity() {
+        return maxCapacity;
+    }
+
+    @Override
+    public boolean offer(K key, V value) {
+        long nextWrite = this.nextWrite;
+        Ring<K, V> ring = oldestRing;
+        long ringEnd = ring == producerRing ? Long.MAX_VALUE : ring.end();
+
+        for (long readPosition = firstWrite; readPosition < nextWrite; readPosition++) {
+            while (readPosition >= ringEnd) {
+                ring = ring.next;
+                ringEnd = ring == producerRing ? Long.MAX_VALUE : ring.end();
+            }
+
+            int index = ring.index(readPosition);
+
+            if(key.equals(ring.keys[index])) {
+                ring.values.set(index, value);
+
+                if (firstWrite <= readPosition) {  // check that the reader has not read it yet
+                    return true;
+                } else {
+                    break;
+                }
+            }
+        }
+
+        return add(key, value);
+    }
+
+    private boolean add(K key, V value) {
+        cleanUp();
+
+        int size = size();
+        int capacity = producerRing.capacity();
+
+        if (size == capacity) {
+            if (capacity == maxCapacity) {
+                rejectionCount.lazySet(rejectionCount.get() + 1);
+                return false;
+            }
+
+            resize(capacity * 2);
+        } else if (capacity > initialCapacity && isQuiet(size, capacity)) {
+            resize(capacity / 2);
+        }
+
+        store(key, value);
+        return true;
+    }
+
+    private boolean isQuiet(int size, int capacity) {
+        if (size > capacity / 4) {
+            quietAppends = 0;
+            return false;
+        }
+
+        return ++quietAppends >= capacity;
+    }
+
+    /**
+     * links a ring of the given capacity that starts at nextWrite, the consumer reads nextWrite before it follows the link
+     */
+    private void resize(int capacity) {
+        Ring<K, V> ring = new Ring<K, V>(nextWrite, capacity);
+
+        producerRing.next = ring;
+        producerRing = ring;
+        quietAppends = 0;
+        this.capacity = capacity;
+    }
+
+    private void store(K key, V value) {
+        long nextWrite = this.nextWrite;
+        Ring<K, V> ring = producerRing;
+        int index = ring.index(nextWrite);
+
+        ring.keys[index] = key;
+        ring.values.set(index, value);
+
+        this.nextWrite = nextWrite + 1;
+        waitStrategy.signalAllWhenBlocking();
+    }
+
+    @Override public int poll(Collection<? super V> bucket) {
+        return poll(bucket, Integer.MAX_VALUE);
+    }
+
+    @Override public int poll(Collection<? super V> bucket, int maxElements) {
+        PollLimits.checkMaxElements(maxElements);
+        long lastRead = this.lastRead.get();
+        long readLimit = readLimit(lastRead, maxElements);
+        firstWrite = readLimit;
+
+        Ring<K, V> ring = consumerRing;
+        long ringEnd = ring.end();
+
+        for (long readIndex = lastRead + 1; readIndex < readLimit; readIndex++) {
+            while (readIndex >= ringEnd) {
+                ring = ring.next;
+                ringEnd = ring.end();
+            }
+
+            bucket.add(ring.values.get(ring.index(readIndex)));
+        }
+
+        consumerRing = ringFor(ring, readLimit);
+        this.lastRead.lazySet(readLimit - 1);
+        return (int) (readLimit - lastRead - 1);
+    }
+
+    @Override public int poll(V[] values, int offset, int maxElements) {
+        long lastRead = this.lastRead.get();
+        long readLimit = readLimit(lastRead, PollLimits.maxValues(values, offset, maxElements));
+        firstWrite = readLimit;
+
+        Ring<K, V> ring = consumerRing;
+        long ringEnd = ring.end();
+
+        for (long readIndex = lastRead + 1; readIndex < readLimit; readIndex++) {
+            while (readIndex >= ringEnd) {
+                ring = ring.next;
+                ringEnd = ring.end();
+            }
+
+            values[offset++] = ring.values.get(ring.index(readIndex));
+        }
+
+        consumerRing = ringFor(ring, readLimit);
+        this.lastRead.lazySet(readLimit - 1);
+        return (int) (readLimit - lastRead - 1);
+    }
+
+    private long readLimit(long lastRead, int maxElements) {
+        return Math.min(nextWrite, lastRead + 1 + maxElements);
+    }
+
+    @Override public int poll(Collection<? super V> bucket, long timeout, TimeUnit unit) throws InterruptedException {
+        if (waitStrategy.waitFor(this, unit.toNanos(timeout))) {
+            return poll(bucket);
+        }
+
+        return 0;
+    }
+
+    @Override public int take(Collection<? super V> bucket) throws InterruptedException {
+        int count;
+
+        while ((count = poll(bucket)) == 0) {
+            waitStrategy.waitFor(this, Long.MAX_VALUE);
+        }
+
+        return count;
+    }
+
+    @Override public int poll(ValueHandler<? super K, ? super V> handler) {
+        long lastRead = this.lastRead.get();
+        long nextWrite = this.nextWrite;
+        firstWrite = nextWrite;
+
+        Ring<K, V> ring = consumerRing;
+        long ringEnd = ring.end();
+
+        for (long readIndex = lastRead + 1; readIndex < nextWrite; readIndex++) {
+            while (readIndex >= ringEnd) {
+                ring = ring.next;
+                ringEnd = ring.end();
+            }
+
+            int index = ring.index(readIndex);
+            handler.onValue(ring.keys[index], ring.values.get(index), readIndex == nextWrite - 1);
+        }
+
+        consumerRing = ringFor(ring, nextWrite);
+        this.lastRead.lazySet(nextWrite - 1);
+        return (int) (nextWrite - lastRead - 1);
+    }
+
+    /**
+     * the ring that will hold readIndex, so that the consumer lets go of a ring as soon as it has read all of it,
+     * rather than keeping it and the values it read reachable after the producer has dropped it
+     */
+    private static <K, V> Ring<K, V> ringFor(Ring<K, V> ring, long readIndex) {
+        while (readIndex >= ring.end()) {
+            ring = ring.next;
+        }
+
+        return ring;
+    }
+
+    /**
+     * drops the rings the consumer has finished with, then nulls out what it has read from the oldest one left
+     */
+    private void cleanUp() {
+        long lastRead = this.lastRead.get();
+
+        if (lastRead == lastCleaned) {
+            return;
+        }
+
+        while (oldestRing != producerRing && lastRead >= oldestRing.next.start - 1) {
+            oldestRing = oldestRing.next;
+            lastCleaned = Math.max(lastCleaned, oldestRing.start - 1);
+        }
+
+        Ring<K, V> ring = oldestRing;
+
+        while (lastCleaned < lastRead) {
+            int index = ring.index(++lastCleaned);
+            ring.keys[index] = null;
+            ring.values.lazySet(index, null);
+        }
+    }
+
+    private static final class Ring<K, V> {
+        private final long start; // the index of the first value written to this ring
+        private final K[] keys;
+        private final AtomicReferenceArray<V> values;
+        private final int mask;
+        private volatile Ring<K, V> next; // set before nextWrite moves past next.start
+
+        @SuppressWarnings("unchecked")
+        private Ring(long start, int capacity) {
+            this.start = start;
+            this.keys = (K[]) new Object[capacity];
+            this.values = new AtomicReferenceArray<V>(capacity);
+            this.mask = capacity - 1;
+        }
+
+        private int capacity() {
+            return mask + 1;
+        }
+
+        /**
+         * the index of the first value written to the next ring, or Long.MAX_VALUE if this is the newest
+         */
+        private long end() {
+            Ring<K, V> next = this.next;
+            return next == null ? Long.MAX_VALUE : next.start;
+        }
+
+        private int index(long value) {
+            return ((int) value) & mask;
+        }
+    }
+
+}
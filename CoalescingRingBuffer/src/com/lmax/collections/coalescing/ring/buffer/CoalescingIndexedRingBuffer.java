@@ -0,0 +1,259 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A {@link CoalescingRingBuffer} that finds the pending slot of a key through a producer private
+ * open addressing index instead of scanning every slot between firstWrite and nextWrite.
+ * The cost of an offer therefore stays flat however large the backlog of unread values grows.
+ */
+public final class CoalescingIndexedRingBuffer<K, V> implements BlockingCoalescingBuffer<K, V> {
+
+    private static final long EMPTY = 0; // sequences start at 1 so 0 never names a slot
+
+    private volatile long nextWrite = 1; // the next write index
+    private long lastCleaned = 0; // the last index that was nulled out by the producer
+    private final AtomicLong rejectionCount = new AtomicLong(0);
+    private final K[] keys;
+    private final AtomicReferenceArray<V> atomicReferenceArray;
+
+    private final int mask;
+    private final int capacity;
+    private final WaitStrategy waitStrategy;
+
+    private final long[] index; // key hash -> sequence of the newest slot holding that key, only touched by the producer
+    private final int indexMask;
+
+    private volatile long firstWrite = 1; // the oldest slot that is is safe to write to
+    private final AtomicLong lastRead = new AtomicLong(0); // the newest slot that it is safe to overwrite
+
+    public CoalescingIndexedRingBuffer(int capacity) {
+        this(capacity, new BusySpinWaitStrategy());
+    }
+
+    @SuppressWarnings("unchecked")
+    public CoalescingIndexedRingBuffer(int capacity, WaitStrategy waitStrategy) {
+        this.capacity = nextPowerOfTwo(capacity);
+        this.mask = this.capacity - 1;
+        this.waitStrategy = waitStrategy;
+
+        this.keys = (K[]) new Object[this.capacity];
+        this.atomicReferenceArray = new AtomicReferenceArray<V>(this.capacity);
+
+        this.index = new long[this.capacity * 2]; // keeps the load factor at or below a half
+        this.indexMask = this.index.length - 1;
+    }
+
+    private int nextPowerOfTwo(int value) {
+        return 1 << (32 - Integer.numberOfLeadingZeros(value - 1));
+    }
+
+    public int size() {
+        return (int) (nextWrite - lastRead.get() - 1);
+    }
+
+    @Override public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean isFull() {
+        return size() == capacity;
+    }
+
+    @Override
+    public boolean offer(K key, V value) {
+        long position = index[find(key)];
+
+        if (position >= firstWrite) {
+            atomicReferenceArray.set(mask(position), value);
+
+            if (firstWrite <= position) {  // check that the reader has not read it yet
+                return true;
+            }
+        }
+
+        return add(key, value);
+    }
+
+    private boolean add(K key, V value) {
+        if (isFull()) {
+            rejectionCount.lazySet(rejectionCount.get() + 1);
+            return false;
+        }
+
+        cleanUp();
+        store(key, value);
+        return true;
+    }
+
+    private void store(K key, V value) {
+        long nextWrite = this.nextWrite;
+        int index = mask(nextWrite);
+
+        keys[index] = key;
+        atomicReferenceArray.set(index, value);
+        this.index[find(key)] = nextWrite; // replaces any entry still pointing at an already read slot
+
+        this.nextWrite = nextWrite + 1;
+        waitStrategy.signalAllWhenBlocking();
+    }
+
+    @Override public int poll(Collection<? super V> bucket) {
+        return poll(bucket, Integer.MAX_VALUE);
+    }
+
+    @Override public int poll(Collection<? super V> bucket, int maxElements) {
+        PollLimits.checkMaxElements(maxElements);
+        long lastRead = this.lastRead.get();
+        long readLimit = readLimit(lastRead, maxElements);
+        firstWrite = readLimit;
+
+        for (long readIndex = lastRead + 1; readIndex < readLimit; readIndex++) {
+            int index = mask(readIndex);
+            bucket.add(atomicReferenceArray.get(index));
+        }
+
+        this.lastRead.lazySet(readLimit - 1);
+        return (int) (readLimit - lastRead - 1);
+    }
+
+    @Override public int poll(V[] values, int offset, int maxElements) {
+        long lastRead = this.lastRead.get();
+        long readLimit = readLimit(lastRead, PollLimits.maxValues(values, offset, maxElements));
+        firstWrite = readLimit;
+
+        for (long readIndex = lastRead + 1; readIndex < readLimit; readIndex++) {
+            int index = mask(readIndex);
+            values[offset++] = atomicReferenceArray.get(index);
+        }
+
+        this.lastRead.lazySet(readLimit - 1);
+        return (int) (readLimit - lastRead - 1);
+    }
+
+    private long readLimit(long lastRead, int maxElements) {
+        return Math.min(nextWrite, lastRead + 1 + maxElements);
+    }
+
+    @Override public int poll(Collection<? super V> bucket, long timeout, TimeUnit unit) throws InterruptedException {
+        if (waitStrategy.waitFor(this, unit.toNanos(timeout))) {
+            return poll(bucket);
+        }
+
+        return 0;
+    }
+
+    @Override public int take(Collection<? super V> bucket) throws InterruptedException {
+        int count;
+
+        while ((count = poll(bucket)) == 0) {
+            waitStrategy.waitFor(this, Long.MAX_VALUE);
+        }
+
+        return count;
+    }
+
+    @Override public int poll(ValueHandler<? super K, ? super V> handler) {
+        long lastRead = this.lastRead.get();
+        long nextWrite = this.nextWrite;
+        firstWrite = nextWrite;
+
+        for (long readIndex = lastRead + 1; readIndex < nextWrite; readIndex++) {
+            int index = mask(readIndex);
+            handler.onValue(keys[index], atomicReferenceArray.get(index), readIndex == nextWrite - 1);
+        }
+
+        this.lastRead.lazySet(nextWrite - 1);
+        return (int) (nextWrite - lastRead - 1);
+    }
+
+    private void cleanUp() {
+        long lastRead = this.lastRead.get();
+
+        if (lastRead == lastCleaned) {
+            return;
+        }
+
+        while (lastCleaned < lastRead) {
+            int index = mask(++lastCleaned);
+            unindex(keys[index], lastCleaned);
+            keys[index] = null;
+            atomicReferenceArray.lazySet(index, null);
+        }
+    }
+
+    /**
+     * returns the index slot that holds the key, or the empty slot where it would be inserted
+     */
+    private int find(K key) {
+        int slot = hash(key);
+        long position;
+
+        while ((position = index[slot]) != EMPTY) {
+            if (key.equals(keys[mask(position)])) {
+                return slot;
+            }
+
+            slot = (slot + 1) & indexMask;
+        }
+
+        return slot;
+    }
+
+    private void unindex(K key, long position) {
+        int slot = find(key);
+
+        if (index[slot] == position) { // a newer slot for the same key keeps its entry
+            remove(slot);
+        }
+    }
+
+    /**
+     * backward shift deletion, so lookups never need tombstones
+     */
+    private void remove(int slot) {
+        int hole = slot;
+        int next = (hole + 1) & indexMask;
+        long position;
+
+        while ((position = index[next]) != EMPTY) {
+            int home = hash(keys[mask(position)]);
+
+            if (((next - home) & indexMask) >= ((next - hole) & indexMask)) {
+                index[hole] = position;
+                hole = next;
+            }
+
+            next = (next + 1) & indexMask;
+        }
+
+        index[hole] = EMPTY;
+    }
+
+    private int hash(K key) {
+        int hash = key.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & indexMask;
+    }
+
+    private int mask(long value) {
+        return ((int) value) & mask;
+    }
+
+}
@@ -0,0 +1,191 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiFunction;
+
+/**
+ * A {@link CoalescingRingBuffer} that merges rather than replaces pending values.
+ * <p>
+ * Re-checking firstWrite after the write, as the ring does, is not enough here: a merged value that the
+ * consumer had already read would be appended again and counted twice. Instead the consumer takes each
+ * value with getAndSet(null), and the producer only installs a merged value by CAS from the pending one,
+ * so exactly one of them wins each slot and a losing producer starts a new slot with the unmerged value.
+ * Values, and what the merger makes of them, may not be null, as null marks a slot whose value has been taken.
+ */
+public final class CoalescingMergingBuffer<K, V> implements MergingCoalescingBuffer<K, V> {
+
+    private volatile long nextWrite = 1; // the next write index
+    private long lastCleaned = 0; // the last index that was nulled out by the producer
+    private final AtomicLong rejectionCount = new AtomicLong(0);
+    private final K[] keys;
+    private final AtomicReferenceArray<V> atomicReferenceArray;
+    private final BiFunction<V, V, V> replace = new BiFunction<V, V, V>() {
+        @Override
+        public V apply(V pending, V value) {
+            return value;
+        }
+    };
+
+    private final int mask;
+    private final int capacity;
+
+    private volatile long firstWrite = 1; // the oldest slot that is is safe to write to
+    private final AtomicLong lastRead = new AtomicLong(0); // the newest slot that it is safe to overwrite
+
+    @SuppressWarnings("unchecked")
+    public CoalescingMergingBuffer(int capacity) {
+        this.capacity = nextPowerOfTwo(capacity);
+        this.mask = this.capacity - 1;
+
+        this.keys = (K[]) new Object[this.capacity];
+        this.atomicReferenceArray = new AtomicReferenceArray<V>(this.capacity);
+    }
+
+    private int nextPowerOfTwo(int value) {
+        return 1 << (32 - Integer.numberOfLeadingZeros(value - 1));
+    }
+
+    public int size() {
+        return (int) (nextWrite - lastRead.get() - 1);
+    }
+
+    @Override public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean isFull() {
+        return size() == capacity;
+    }
+
+    @Override
+    public boolean offer(K key, V value) {
+        return offer(key, value, replace);
+    }
+
+    @Override
+    public boolean offer(K key, V value, BiFunction<? super V, ? super V, ? extends V> merger) {
+        Objects.requireNonNull(value, "value");
+        long nextWrite = this.nextWrite;
+
+        for (long readPosition = firstWrite; readPosition < nextWrite; readPosition++) {
+            int index = mask(readPosition);
+
+            if (key.equals(keys[index])) {
+                V pending = atomicReferenceArray.get(index);
+
+                if (pending != null && atomicReferenceArray.compareAndSet(index, pending, merge(merger, pending, value))) {
+                    return true;
+                }
+                // the consumer took it first, so keep looking in case the key was appended again since
+            }
+        }
+
+        return add(key, value);
+    }
+
+    private V merge(BiFunction<? super V, ? super V, ? extends V> merger, V pending, V value) {
+        return Objects.requireNonNull(merger.apply(pending, value), "the merger returned null");
+    }
+
+    private boolean add(K key, V value) {
+        if (isFull()) {
+            rejectionCount.lazySet(rejectionCount.get() + 1);
+            return false;
+        }
+
+        cleanUp();
+        store(key, value);
+        return true;
+    }
+
+    private void store(K key, V value) {
+        long nextWrite = this.nextWrite;
+        int index = mask(nextWrite);
+
+        keys[index] = key;
+        atomicReferenceArray.set(index, value);
+
+        this.nextWrite = nextWrite + 1;
+    }
+
+    @Override public int poll(Collection<? super V> bucket) {
+        return poll(bucket, Integer.MAX_VALUE);
+    }
+
+    @Override public int poll(Collection<? super V> bucket, int maxElements) {
+        PollLimits.checkMaxElements(maxElements);
+        long lastRead = this.lastRead.get();
+        long readLimit = readLimit(lastRead, maxElements);
+        firstWrite = readLimit;
+
+        for (long readIndex = lastRead + 1; readIndex < readLimit; readIndex++) {
+            int index = mask(readIndex);
+            bucket.add(atomicReferenceArray.getAndSet(index, null));
+        }
+
+        this.lastRead.lazySet(readLimit - 1);
+        return (int) (readLimit - lastRead - 1);
+    }
+
+    @Override public int poll(V[] values, int offset, int maxElements) {
+        long lastRead = this.lastRead.get();
+        long readLimit = readLimit(lastRead, PollLimits.maxValues(values, offset, maxElements));
+        firstWrite = readLimit;
+
+        for (long readIndex = lastRead + 1; readIndex < readLimit; readIndex++) {
+            int index = mask(readIndex);
+            values[offset++] = atomicReferenceArray.getAndSet(index, null);
+        }
+
+        this.lastRead.lazySet(readLimit - 1);
+        return (int) (readLimit - lastRead - 1);
+    }
+
+    private long readLimit(long lastRead, int maxElements) {
+        return Math.min(nextWrite, lastRead + 1 + maxElements);
+    }
+
+    @Override public int poll(ValueHandler<? super K, ? super V> handler) {
+        long lastRead = this.lastRead.get();
+        long nextWrite = this.nextWrite;
+        firstWrite = nextWrite;
+
+        for (long readIndex = lastRead + 1; readIndex < nextWrite; readIndex++) {
+            int index = mask(readIndex);
+            handler.onValue(keys[index], atomicReferenceArray.getAndSet(index, null), readIndex == nextWrite - 1);
+        }
+
+        this.lastRead.lazySet(nextWrite - 1);
+        return (int) (nextWrite - lastRead - 1);
+    }
+
+    private void cleanUp() {
+        long lastRead = this.lastRead.get();
+
+        while (lastCleaned < lastRead) {
+            keys[mask(++lastCleaned)] = null; // the consumer has already taken the values
+        }
+    }
+
+    private int mask(long value) {
+        return ((int) value) & mask;
+    }
+
+}
@@ -0,0 +1,238 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A coalescing ring buffer that any number of threads may offer to, drained by a single consumer.
+ * <p>
+ * Producers claim slots by CAS on nextWrite and publish them by storing the slot's sequence into
+ * {@code sequences}. A producer that finds its key pending takes the slot by CAS from its sequence to
+ * the negated sequence, replaces the value and hands it back; the consumer takes each slot by CAS from
+ * its sequence to {@link #CONSUMED}, so a value is either replaced before it is read or appended again.
+ * Updates from different producers to the same key are ordered only by which one reaches the slot first.
+ */
+public final class CoalescingMultiWriterBuffer<K, V> implements BlockingCoalescingBuffer<K, V> {
+
+    private static final long CONSUMED = 0; // also the state of a slot that has been claimed but not yet published
+
+    private final AtomicLong nextWrite = new AtomicLong(1); // the next write index
+    private final AtomicLong rejectionCount = new AtomicLong(0);
+    private final AtomicReferenceArray<K> keys;
+    private final AtomicReferenceArray<V> atomicReferenceArray;
+    private final AtomicLongArray sequences; // the sequence published in each slot, negated while a producer updates it
+
+    private final int mask;
+    private final int capacity;
+    private final WaitStrategy waitStrategy;
+
+    private volatile long firstWrite = 1; // the oldest slot that is is safe to write to
+    private final AtomicLong lastRead = new AtomicLong(0); // the newest slot that it is safe to overwrite
+
+    public CoalescingMultiWriterBuffer(int capacity) {
+        this(capacity, new BusySpinWaitStrategy());
+    }
+
+    public CoalescingMultiWriterBuffer(int capacity, WaitStrategy waitStrategy) {
+        this.capacity = nextPowerOfTwo(capacity);
+        this.mask = this.capacity - 1;
+        this.waitStrategy = waitStrategy;
+
+        this.keys = new AtomicReferenceArray<K>(this.capacity);
+        this.atomicReferenceArray = new AtomicReferenceArray<V>(this.capacity);
+        this.sequences = new AtomicLongArray(this.capacity);
+    }
+
+    private int nextPowerOfTwo(int value) {
+        return 1 << (32 - Integer.numberOfLeadingZeros(value - 1));
+    }
+
+    public int size() {
+        return (int) (nextWrite.get() - lastRead.get() - 1);
+    }
+
+    @Override public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean isFull() {
+        return size() == capacity;
+    }
+
+    @Override
+    public boolean offer(K key, V value) {
+        long firstWrite = this.firstWrite;
+
+        // newest first, since racing producers can leave a key pending in more than one slot and only the last is delivered last
+        for (long readPosition = this.nextWrite.get() - 1; readPosition >= firstWrite; readPosition--) {
+            if (update(readPosition, key, value)) {
+                return true;
+            }
+        }
+
+        return add(key, value);
+    }
+
+    private boolean update(long position, K key, V value) {
+        int index = mask(position);
+
+        while (true) {
+            long sequence = sequences.get(index);
+
+            if (sequence == position) {
+                if (!key.equals(keys.get(index))) {
+                    return false;
+                }
+
+                if (sequences.compareAndSet(index, position, -position)) {
+                    atomicReferenceArray.lazySet(index, value);
+                    sequences.set(index, position);
+                    return true;
+                }
+            } else if (sequence != -position) { // not yet published, already consumed or reused
+                return false;
+            }
+            // another producer is updating this slot, so wait and try again
+        }
+    }
+
+    private boolean add(K key, V value) {
+        while (true) {
+            long nextWrite = this.nextWrite.get();
+
+            if (nextWrite - lastRead.get() - 1 == capacity) {
+                rejectionCount.incrementAndGet();
+                return false;
+            }
+
+            if (this.nextWrite.compareAndSet(nextWrite, nextWrite + 1)) {
+                store(nextWrite, key, value);
+                return true;
+            }
+        }
+    }
+
+    private void store(long position, K key, V value) {
+        int index = mask(position);
+
+        keys.lazySet(index, key);
+        atomicReferenceArray.lazySet(index, value);
+        sequences.set(index, position);
+        waitStrategy.signalAllWhenBlocking();
+    }
+
+    @Override public int poll(Collection<? super V> bucket) {
+        return poll(bucket, Integer.MAX_VALUE);
+    }
+
+    @Override public int poll(Collection<? super V> bucket, int maxElements) {
+        PollLimits.checkMaxElements(maxElements);
+        long lastRead = this.lastRead.get();
+        long readLimit = publishedLimit(lastRead + 1, maxElements);
+        firstWrite = readLimit;
+
+        for (long readIndex = lastRead + 1; readIndex < readLimit; readIndex++) {
+            int index = consume(readIndex);
+            keys.lazySet(index, null);
+            bucket.add(atomicReferenceArray.getAndSet(index, null));
+        }
+
+        this.lastRead.lazySet(readLimit - 1);
+        return (int) (readLimit - lastRead - 1);
+    }
+
+    @Override public int poll(V[] values, int offset, int maxElements) {
+        long lastRead = this.lastRead.get();
+        long readLimit = publishedLimit(lastRead + 1, PollLimits.maxValues(values, offset, maxElements));
+        firstWrite = readLimit;
+
+        for (long readIndex = lastRead + 1; readIndex < readLimit; readIndex++) {
+            int index = consume(readIndex);
+            keys.lazySet(index, null);
+            values[offset++] = atomicReferenceArray.getAndSet(index, null);
+        }
+
+        this.lastRead.lazySet(readLimit - 1);
+        return (int) (readLimit - lastRead - 1);
+    }
+
+    @Override public int poll(Collection<? super V> bucket, long timeout, TimeUnit unit) throws InterruptedException {
+        if (waitStrategy.waitFor(this, unit.toNanos(timeout))) {
+            return poll(bucket);
+        }
+
+        return 0;
+    }
+
+    @Override public int take(Collection<? super V> bucket) throws InterruptedException {
+        int count;
+
+        while ((count = poll(bucket)) == 0) {
+            waitStrategy.waitFor(this, Long.MAX_VALUE);
+        }
+
+        return count;
+    }
+
+    @Override public int poll(ValueHandler<? super K, ? super V> handler) {
+        long lastRead = this.lastRead.get();
+        long readLimit = publishedLimit(lastRead + 1, Integer.MAX_VALUE);
+        firstWrite = readLimit;
+
+        for (long readIndex = lastRead + 1; readIndex < readLimit; readIndex++) {
+            int index = consume(readIndex);
+            K key = keys.get(index);
+            keys.lazySet(index, null);
+            handler.onValue(key, atomicReferenceArray.getAndSet(index, null), readIndex == readLimit - 1);
+        }
+
+        this.lastRead.lazySet(readLimit - 1);
+        return (int) (readLimit - lastRead - 1);
+    }
+
+    /**
+     * returns the first sequence from start that has been claimed but not yet published, reading at most maxElements
+     */
+    private long publishedLimit(long start, int maxElements) {
+        long nextWrite = Math.min(this.nextWrite.get(), start + maxElements);
+        long readLimit = start;
+
+        while (readLimit < nextWrite && Math.abs(sequences.get(mask(readLimit))) == readLimit) {
+            readLimit++;
+        }
+
+        return readLimit;
+    }
+
+    private int consume(long position) {
+        int index = mask(position);
+
+        while (!sequences.compareAndSet(index, position, CONSUMED)) {
+            // a producer is replacing the value, it hands the slot back straight afterwards
+        }
+
+        return index;
+    }
+
+    private int mask(long value) {
+        return ((int) value) & mask;
+    }
+
+}
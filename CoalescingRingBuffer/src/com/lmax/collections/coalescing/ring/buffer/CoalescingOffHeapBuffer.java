@@ -0,0 +1,268 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link LongCoalescingRingBuffer} whose values are fixed length records in a direct ByteBuffer
+ * rather than objects, so neither offering, coalescing nor polling allocates.
+ * <p>
+ * Every slot is laid out as [sequence][key][record]. A coalesced update overwrites the record in place,
+ * which the consumer may be copying at the same time, so each slot is guarded by a seqlock: the producer
+ * makes the slot's sequence odd while it writes and even again afterwards, and the consumer copies the
+ * record out and starts again if the sequence was odd or moved while it was copying.
+ * <p>
+ * nextWrite, firstWrite and lastRead live in a header in front of the slots rather than in fields, so a
+ * buffer {@link #create created} in a memory mapped file can be {@link #open opened} by another process,
+ * one of them producing and the other consuming with no system calls on either side.
+ */
+public final class CoalescingOffHeapBuffer<V> implements Pollable {
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private static final long MAGIC = 0x436f616c65736365L; // written last, so a half created file is never opened
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int RECORD_LENGTH_OFFSET = 12;
+    private static final int NEXT_WRITE_OFFSET = 64; // each sequence on a cache line of its own
+    private static final int FIRST_WRITE_OFFSET = 128;
+    private static final int LAST_READ_OFFSET = 192;
+    private static final int HEADER_LENGTH = 256;
+
+    private static final int SEQUENCE_OFFSET = 0;
+    private static final int KEY_OFFSET = 8;
+    private static final int RECORD_OFFSET = 16;
+
+    private final AtomicLong rejectionCount = new AtomicLong(0);
+    private final ByteBuffer buffer; // the header followed by the slots
+    private final ByteBuffer scratch; // the consumer's copy of the record it is handing out
+    private final RecordCodec<? super V> codec;
+
+    private final int mask;
+    private final int capacity;
+    private final int slotLength;
+    private final int recordLength;
+
+    public CoalescingOffHeapBuffer(int capacity, RecordCodec<? super V> codec) {
+        this(initialise(allocate(length(nextPowerOfTwo(capacity), codec)), nextPowerOfTwo(capacity), align(codec.recordLength())), codec);
+    }
+
+    private CoalescingOffHeapBuffer(ByteBuffer buffer, RecordCodec<? super V> codec) {
+        this.buffer = buffer;
+        this.codec = codec;
+        this.recordLength = align(codec.recordLength());
+        this.slotLength = RECORD_OFFSET + recordLength;
+        this.capacity = buffer.getInt(CAPACITY_OFFSET);
+        this.mask = this.capacity - 1;
+        this.scratch = allocate(recordLength);
+    }
+
+    /**
+     * creates a buffer in the file, replacing anything that was there, ready for another process to {@link #open}
+     */
+    public static <V> CoalescingOffHeapBuffer<V> create(File file, int capacity, RecordCodec<? super V> codec) throws IOException {
+        int length = length(nextPowerOfTwo(capacity), codec);
+        ByteBuffer buffer = map(file, length, true);
+        return new CoalescingOffHeapBuffer<V>(initialise(buffer, nextPowerOfTwo(capacity), align(codec.recordLength())), codec);
+    }
+
+    /**
+     * maps a buffer that has already been created in the file, by this process or another one
+     */
+    public static <V> CoalescingOffHeapBuffer<V> open(File file, RecordCodec<? super V> codec) throws IOException {
+        ByteBuffer buffer = map(file, (int) file.length(), false);
+
+        if (buffer.capacity() < HEADER_LENGTH || (long) LONGS.getVolatile(buffer, MAGIC_OFFSET) != MAGIC) {
+            throw new IllegalStateException(file + " does not hold a coalescing buffer yet");
+        }
+
+        if (buffer.getInt(RECORD_LENGTH_OFFSET) != align(codec.recordLength())) {
+            throw new IllegalArgumentException(file + " holds records of " + buffer.getInt(RECORD_LENGTH_OFFSET) + " bytes, not " + align(codec.recordLength()));
+        }
+
+        return new CoalescingOffHeapBuffer<V>(buffer, codec);
+    }
+
+    private static ByteBuffer map(File file, int length, boolean truncate) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+
+        try {
+            if (truncate) {
+                randomAccessFile.setLength(0); // zeroes every slot sequence
+                randomAccessFile.setLength(length);
+            }
+
+            ByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+            return buffer.order(ByteOrder.nativeOrder()); // mappings are page aligned, so no need to align the slots
+        } finally {
+            randomAccessFile.close(); // the mapping outlives the file
+        }
+    }
+
+    private static ByteBuffer initialise(ByteBuffer buffer, int capacity, int recordLength) {
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        buffer.putInt(RECORD_LENGTH_OFFSET, recordLength);
+        LONGS.setVolatile(buffer, NEXT_WRITE_OFFSET, 1L);
+        LONGS.setVolatile(buffer, FIRST_WRITE_OFFSET, 1L);
+        LONGS.setVolatile(buffer, LAST_READ_OFFSET, 0L);
+        LONGS.setVolatile(buffer, MAGIC_OFFSET, MAGIC);
+        return buffer;
+    }
+
+    private static int length(int capacity, RecordCodec<?> codec) {
+        return HEADER_LENGTH + capacity * (RECORD_OFFSET + align(codec.recordLength()));
+    }
+
+    private static int nextPowerOfTwo(int value) {
+        return 1 << (32 - Integer.numberOfLeadingZeros(value - 1));
+    }
+
+    private static int align(int length) {
+        return (length + 7) & ~7; // keeps every sequence and key on an 8 byte boundary
+    }
+
+    private static ByteBuffer allocate(int length) {
+        return ByteBuffer.allocateDirect(length + 7).alignedSlice(8).order(ByteOrder.nativeOrder());
+    }
+
+    public int size() {
+        return (int) (nextWrite() - lastRead() - 1);
+    }
+
+    @Override public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean isFull() {
+        return size() == capacity;
+    }
+
+    public boolean offer(long key, V value) {
+        long nextWrite = nextWrite();
+
+        for (long readPosition = firstWrite(); readPosition < nextWrite; readPosition++) {
+            int slot = offset(readPosition);
+
+            if (key == buffer.getLong(slot + KEY_OFFSET)) {
+                write(slot, key, value);
+
+                if (firstWrite() <= readPosition) {  // check that the reader has not read it yet
+                    return true;
+                } else {
+                    break;
+                }
+            }
+        }
+
+        return add(key, value);
+    }
+
+    private boolean add(long key, V value) {
+        if (isFull()) {
+            rejectionCount.lazySet(rejectionCount.get() + 1);
+            return false;
+        }
+
+        store(key, value);
+        return true;
+    }
+
+    private void store(long key, V value) {
+        long nextWrite = nextWrite();
+
+        write(offset(nextWrite), key, value);
+
+        LONGS.setVolatile(buffer, NEXT_WRITE_OFFSET, nextWrite + 1);
+    }
+
+    private void write(int slot, long key, V value) {
+        long sequence = (long) LONGS.get(buffer, slot + SEQUENCE_OFFSET); // only the producer writes it
+
+        LONGS.setOpaque(buffer, slot + SEQUENCE_OFFSET, sequence + 1);
+        VarHandle.storeStoreFence();
+
+        buffer.putLong(slot + KEY_OFFSET, key);
+        codec.write(value, buffer, slot + RECORD_OFFSET);
+
+        LONGS.setVolatile(buffer, slot + SEQUENCE_OFFSET, sequence + 2); // volatile, so the firstWrite check that follows cannot move ahead of it
+    }
+
+    public int poll(RecordHandler handler) {
+        return poll(handler, Integer.MAX_VALUE);
+    }
+
+    public int poll(RecordHandler handler, int maxElements) {
+        PollLimits.checkMaxElements(maxElements);
+        long lastRead = lastRead();
+        long readLimit = Math.min(nextWrite(), lastRead + 1 + maxElements);
+        LONGS.setVolatile(buffer, FIRST_WRITE_OFFSET, readLimit);
+
+        for (long readIndex = lastRead + 1; readIndex < readLimit; readIndex++) {
+            long key = read(offset(readIndex));
+            handler.onRecord(key, scratch, 0, readIndex == readLimit - 1);
+        }
+
+        LONGS.setRelease(buffer, LAST_READ_OFFSET, readLimit - 1);
+        return (int) (readLimit - lastRead - 1);
+    }
+
+    /**
+     * copies the slot's record into scratch and returns its key, retrying until the copy was not torn
+     */
+    private long read(int slot) {
+        while (true) {
+            long sequence = (long) LONGS.getVolatile(buffer, slot + SEQUENCE_OFFSET);
+            long key = buffer.getLong(slot + KEY_OFFSET);
+
+            for (int i = 0; i < recordLength; i += 8) {
+                scratch.putLong(i, buffer.getLong(slot + RECORD_OFFSET + i));
+            }
+
+            VarHandle.loadLoadFence();
+
+            if ((sequence & 1) == 0 && sequence == (long) LONGS.getOpaque(buffer, slot + SEQUENCE_OFFSET)) {
+                return key;
+            }
+
+            Thread.onSpinWait();
+        }
+    }
+
+    private long nextWrite() {
+        return (long) LONGS.getVolatile(buffer, NEXT_WRITE_OFFSET);
+    }
+
+    private long firstWrite() {
+        return (long) LONGS.getVolatile(buffer, FIRST_WRITE_OFFSET);
+    }
+
+    private long lastRead() {
+        return (long) LONGS.getVolatile(buffer, LAST_READ_OFFSET);
+    }
+
+    private int offset(long value) {
+        return HEADER_LENGTH + (((int) value) & mask) * slotLength;
+    }
+
+}
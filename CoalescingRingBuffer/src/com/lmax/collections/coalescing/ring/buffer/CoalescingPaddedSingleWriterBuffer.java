@@ -0,0 +1,152 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import java.util.Collection;
+
+/**
+ * {@link CoalescingSingleWriterBuffer} laid out like {@link CoalescingPaddedRingBuffer}, with the producer's
+ * and the consumer's sequences on separate cache lines and lastRead cached on the producer side.
+ */
+public final class CoalescingPaddedSingleWriterBuffer<K, V> extends PaddedRingBufferConsumerFields<K, V> implements CoalescingBuffer<K, V> {
+    long p31, p32, p33, p34, p35, p36, p37;
+
+    public CoalescingPaddedSingleWriterBuffer(int capacity) {
+        super(capacity);
+    }
+
+    public int size() {
+        return (int) (nextWrite - lastRead - 1);
+    }
+
+    @Override public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean isFull() {
+        return size() == capacity;
+    }
+
+    @Override
+    public boolean offer(K key, V value) {
+        long nextWrite = this.nextWrite;
+
+        for (long updatePosition = firstWrite; updatePosition < nextWrite; updatePosition++) {
+            int index = computeIndex(updatePosition);
+
+            if(key.equals(keys[index])) {
+                atomicReferenceArray.set(index, value);
+
+                if (updatePosition >= firstWrite) {  // check that the reader has not read it yet
+                    return true;
+                } else {
+                    break;
+                }
+            }
+        }
+
+        return add(key, value);
+    }
+
+    private boolean add(K key, V value) {
+        if (lastCleaned == lastReadCache || nextWrite - lastReadCache - 1 == capacity) {
+            lastReadCache = lastRead;
+
+            if (nextWrite - lastReadCache - 1 == capacity) {
+                return false;
+            }
+        }
+
+        cleanUp();
+        store(key, value);
+        return true;
+    }
+
+    private void store(K key, V value) {
+        long nextWrite = this.nextWrite;
+        int index = computeIndex(nextWrite);
+
+        keys[index] = key;
+        atomicReferenceArray.set(index, value);
+
+        this.nextWrite = nextWrite + 1;
+    }
+
+    @Override public int poll(Collection<? super V> bucket) {
+        return poll(bucket, Integer.MAX_VALUE);
+    }
+
+    @Override public int poll(Collection<? super V> bucket, int maxElements) {
+        PollLimits.checkMaxElements(maxElements);
+        long lastRead = this.lastRead;
+        long readLimit = readLimit(lastRead, maxElements);
+        firstWrite = readLimit;
+
+        for (long readIndex = lastRead + 1; readIndex < readLimit; readIndex++) {
+            int index = computeIndex(readIndex);
+            bucket.add(atomicReferenceArray.get(index));
+        }
+
+        this.lastRead = readLimit - 1;
+        return (int) (readLimit - lastRead - 1);
+    }
+
+    @Override public int poll(V[] values, int offset, int maxElements) {
+        long lastRead = this.lastRead;
+        long readLimit = readLimit(lastRead, PollLimits.maxValues(values, offset, maxElements));
+        firstWrite = readLimit;
+
+        for (long readIndex = lastRead + 1; readIndex < readLimit; readIndex++) {
+            int index = computeIndex(readIndex);
+            values[offset++] = atomicReferenceArray.get(index);
+        }
+
+        this.lastRead = readLimit - 1;
+        return (int) (readLimit - lastRead - 1);
+    }
+
+    private long readLimit(long lastRead, int maxElements) {
+        return Math.min(nextWrite, lastRead + 1 + maxElements);
+    }
+
+    @Override public int poll(ValueHandler<? super K, ? super V> handler) {
+        long lastRead = this.lastRead;
+        long nextWrite = this.nextWrite;
+        firstWrite = nextWrite;
+
+        for (long readIndex = lastRead + 1; readIndex < nextWrite; readIndex++) {
+            int index = computeIndex(readIndex);
+            handler.onValue(keys[index], atomicReferenceArray.get(index), readIndex == nextWrite - 1);
+        }
+
+        this.lastRead = nextWrite - 1;
+        return (int) (nextWrite - lastRead - 1);
+    }
+
+    private void cleanUp() {
+        long lastRead = this.lastReadCache;
+
+        while (lastCleaned < lastRead) {
+            int index = computeIndex(++lastCleaned);
+            keys[index] = null;
+            atomicReferenceArray.set(index, null);
+        }
+    }
+
+    private int computeIndex(long value) {
+        return ((int) value) & mask;
+    }
+
+}
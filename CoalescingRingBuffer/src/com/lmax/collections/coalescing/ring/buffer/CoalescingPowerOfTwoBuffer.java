@@ -47,6 +47,10 @@ public final class CoalescingPowerOfTwoBuffer<K, V> implements CoalescingBuffer<
         return (int) (nextWrite - lastRead - 1);
     }
 
+    @Override public boolean isEmpty() {
+        return size() == 0;
+    }
+
     public boolean isFull() {
         return size() == capacity;
     }
@@ -72,14 +76,54 @@ public final class CoalescingPowerOfTwoBuffer<K, V> implements CoalescingBuffer<
     }
 
     @Override public int poll(Collection<? super V> bucket) {
+        return poll(bucket, Integer.MAX_VALUE);
+    }
+
+    @Override public int poll(Collection<? super V> bucket, int maxElements) {
+        PollLimits.checkMaxElements(maxElements);
+        long lastRead = this.lastRead;
+        long readLimit = readLimit(lastRead, maxElements);
+        nextRead = readLimit;
+
+        for (long readIndex = lastRead + 1; readIndex < readLimit; readIndex++) {
+            int index = computeIndex(readIndex);
+            keys[index] = null;
+            bucket.add(atomicReferenceArray.getAndSet(index, null));
+        }
+
+        this.lastRead = readLimit - 1;
+        return (int) (readLimit - lastRead - 1);
+    }
+
+    @Override public int poll(V[] values, int offset, int maxElements) {
+        long lastRead = this.lastRead;
+        long readLimit = readLimit(lastRead, PollLimits.maxValues(values, offset, maxElements));
+        nextRead = readLimit;
+
+        for (long readIndex = lastRead + 1; readIndex < readLimit; readIndex++) {
+            int index = computeIndex(readIndex);
+            keys[index] = null;
+            values[offset++] = atomicReferenceArray.getAndSet(index, null);
+        }
+
+        this.lastRead = readLimit - 1;
+        return (int) (readLimit - lastRead - 1);
+    }
+
+    private long readLimit(long lastRead, int maxElements) {
+        return Math.min(nextWrite, lastRead + 1 + maxElements);
+    }
+
+    @Override public int poll(ValueHandler<? super K, ? super V> handler) {
         long lastRead = this.lastRead;
         long nextWrite = this.nextWrite;
         nextRead = nextWrite;
 
         for (long readIndex = lastRead + 1; readIndex < nextWrite; readIndex++) {
             int index = computeIndex(readIndex);
+            K key = keys[index];
             keys[index] = null;
-            bucket.add(atomicReferenceArray.getAndSet(index, null));
+            handler.onValue(key, atomicReferenceArray.getAndSet(index, null), readIndex == nextWrite - 1);
         }
 
         this.lastRead = nextWrite - 1;
@@ -0,0 +1,83 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
+
+/**
+ * A {@link Flow.Processor} that coalesces what it is sent by the key of each item before publishing it on with
+ * a {@link CoalescingPublisher}. It asks upstream for everything at once and relies on coalescing to keep the
+ * buffer bounded, so if the buffer rejects an item anyway, upstream is cancelled and the subscriber fails.
+ */
+public final class CoalescingProcessor<K, V> implements Flow.Processor<V, V> {
+
+    private final CoalescingPublisher<K, V> publisher;
+    private final Function<? super V, ? extends K> keyFunction;
+    private Flow.Subscription upstream;
+
+    public CoalescingProcessor(CoalescingBuffer<K, V> buffer, Function<? super V, ? extends K> keyFunction) {
+        this(new CoalescingPublisher<K, V>(buffer), keyFunction);
+    }
+
+    public CoalescingProcessor(CoalescingBuffer<K, V> buffer, Executor executor, Function<? super V, ? extends K> keyFunction) {
+        this(new CoalescingPublisher<K, V>(buffer, executor), keyFunction);
+    }
+
+    private CoalescingProcessor(CoalescingPublisher<K, V> publisher, Function<? super V, ? extends K> keyFunction) {
+        this.publisher = publisher;
+        this.keyFunction = keyFunction;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super V> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (upstream != null) {
+            subscription.cancel();
+            return;
+        }
+
+        upstream = subscription;
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(V item) {
+        if (publisher.isClosed()) {
+            return;
+        }
+
+        if (!publisher.offer(keyFunction.apply(item), item)) {
+            upstream.cancel();
+            publisher.closeExceptionally(new IllegalStateException("coalescing buffer is full"));
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        publisher.closeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        publisher.close();
+    }
+
+}
@@ -0,0 +1,243 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A {@link Flow.Publisher} that hands the values of a {@link CoalescingBuffer} to one subscriber, taking no more
+ * out of the buffer than the subscriber has requested. While demand is zero, values stay in the buffer and keep
+ * coalescing there, so a slow subscriber sees fewer updates rather than a growing queue.
+ * <p>
+ * The buffer is drained on the executor by one task at a time: whoever raises the work in progress count from
+ * zero submits the drain, and the drain keeps going until it has taken back every increment it saw, so it
+ * stays a single consumer of the buffer and every signal to the subscriber, onSubscribe included, is serialised.
+ * Offers must come from a single thread if the buffer is single writer.
+ */
+public final class CoalescingPublisher<K, V> implements Flow.Publisher<V> {
+
+    private static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final CoalescingBuffer<K, V> buffer;
+    private final Executor executor;
+    private final V[] batch; // only touched by the drain
+
+    private final AtomicReference<CoalescingSubscription> subscription = new AtomicReference<CoalescingSubscription>();
+    private final AtomicInteger workInProgress = new AtomicInteger(0);
+    private volatile boolean closed = false;
+    private volatile Throwable closedWith; // set before closed when the publisher failed
+
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    public CoalescingPublisher(CoalescingBuffer<K, V> buffer) {
+        this(buffer, ForkJoinPool.commonPool());
+    }
+
+    public CoalescingPublisher(CoalescingBuffer<K, V> buffer, Executor executor) {
+        this(buffer, executor, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param batchSize the most values a drain takes out of the buffer with one poll
+     */
+    @SuppressWarnings("unchecked")
+    public CoalescingPublisher(CoalescingBuffer<K, V> buffer, Executor executor, int batchSize) {
+        this.buffer = buffer;
+        this.executor = executor;
+        this.batch = (V[]) new Object[batchSize];
+    }
+
+    /**
+     * returns false if the buffer had no room, in which case the value is not published
+     */
+    public boolean offer(K key, V value) {
+        if (closed) {
+            throw new IllegalStateException("publisher is closed");
+        }
+
+        if (!buffer.offer(key, value)) {
+            return false;
+        }
+
+        CoalescingSubscription subscription = this.subscription.get();
+        if (subscription != null && subscription.requested.get() > 0) { // request() schedules a drain for the rest
+            schedule();
+        }
+
+        return true;
+    }
+
+    /**
+     * completes the subscriber once it has requested everything still in the buffer
+     */
+    public void close() {
+        closed = true;
+        schedule();
+    }
+
+    /**
+     * fails the subscriber straight away, anything still in the buffer is not delivered
+     */
+    public void closeExceptionally(Throwable error) {
+        closedWith = error;
+        closed = true;
+        schedule();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super V> subscriber) {
+        CoalescingSubscription subscription = new CoalescingSubscription(subscriber);
+
+        if (!this.subscription.compareAndSet(null, subscription)) {
+            subscription.cancel(); // first, so that nothing the rejected subscriber does reaches the publisher
+            subscriber.onSubscribe(subscription);
+            subscriber.onError(new IllegalStateException("a coalescing publisher only supports one subscriber"));
+            return;
+        }
+
+        schedule(); // the drain calls onSubscribe, so it cannot overlap an onNext
+    }
+
+    private void schedule() {
+        if (workInProgress.getAndIncrement() == 0) {
+            executor.execute(drain);
+        }
+    }
+
+    private void drain() {
+        int missed = 1;
+
+        do {
+            CoalescingSubscription subscription = this.subscription.get();
+
+            if (subscription != null && !subscription.cancelled) {
+                drain(subscription);
+            }
+
+            missed = workInProgress.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void drain(CoalescingSubscription subscription) {
+        Flow.Subscriber<? super V> subscriber = subscription.subscriber;
+
+        if (!subscription.subscribed) {
+            subscription.subscribed = true;
+            subscriber.onSubscribe(subscription);
+
+            if (subscription.cancelled) {
+                return;
+            }
+        }
+
+        Throwable error = closedWith != null ? closedWith : subscription.failedWith;
+        if (error != null) {
+            subscription.cancelled = true;
+            subscriber.onError(error);
+            return;
+        }
+
+        long requested = subscription.requested.get();
+        long emitted = 0;
+
+        while (emitted != requested && !subscription.cancelled) {
+            int count = buffer.poll(batch, 0, (int) Math.min(requested - emitted, batch.length));
+
+            if (count == 0) {
+                break;
+            }
+
+            for (int i = 0; i < count; i++) {
+                V value = batch[i];
+                batch[i] = null;
+
+                if (!subscription.cancelled) {
+                    subscriber.onNext(value);
+                }
+            }
+
+            emitted += count;
+        }
+
+        if (emitted != 0 && requested != Long.MAX_VALUE) {
+            subscription.requested.addAndGet(-emitted);
+        }
+
+        if (closed && !subscription.cancelled && buffer.isEmpty()) {
+            subscription.cancelled = true;
+
+            if (closedWith != null) {
+                subscriber.onError(closedWith);
+            } else {
+                subscriber.onComplete();
+            }
+        }
+    }
+
+    private final class CoalescingSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super V> subscriber;
+        private final AtomicLong requested = new AtomicLong(0); // demand not yet met, Long.MAX_VALUE for unbounded
+        private volatile boolean cancelled = false;
+        private volatile Throwable failedWith; // set by a request that broke the rules, reported by the drain
+        private boolean subscribed = false; // only touched by the drain
+
+        private CoalescingSubscription(Flow.Subscriber<? super V> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (cancelled) {
+                return;
+            }
+
+            if (n <= 0) {
+                failedWith = new IllegalArgumentException("non-positive request " + n); // fails this subscriber, not the publisher
+                schedule();
+                return;
+            }
+
+            long current;
+            long next;
+
+            do {
+                current = requested.get();
+                next = current + n < 0 ? Long.MAX_VALUE : current + n;
+            } while (!requested.compareAndSet(current, next));
+
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+}
@@ -15,29 +15,68 @@
 package com.lmax.collections.coalescing.ring.buffer;
 
 import java.util.Collection;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 
 // Performance = 48 MOPS
-public final class CoalescingRingBuffer<K, V> implements CoalescingBuffer<K, V> {
+public final class CoalescingRingBuffer<K, V> implements BlockingCoalescingBuffer<K, V>, CoalescingBufferStatistics {
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<CoalescingRingBuffer> FIRST_WRITE =
+            AtomicLongFieldUpdater.newUpdater(CoalescingRingBuffer.class, "firstWrite");
 
     private volatile long nextWrite = 1; // the next write index
     private long lastCleaned = 0; // the last index that was nulled out by the producer
+    private long lastEvicted = 0; // the last index the producer took from the consumer to make room
     private final AtomicLong rejectionCount = new AtomicLong(0);
+    private final AtomicLong coalescedCount = new AtomicLong(0);
+    private final AtomicLong appendCount = new AtomicLong(0);
+    private final AtomicLong highWaterMark = new AtomicLong(0); // the largest size the producer has seen
+    private final AtomicLong overflowCount = new AtomicLong(0);
+    private final AtomicLong evictionCount = new AtomicLong(0);
+    private final AtomicLong spillCount = new AtomicLong(0);
     private final K[] keys;
     private final AtomicReferenceArray<V> atomicReferenceArray;
 
     private final int mask;
     private final int capacity;
+    private final WaitStrategy waitStrategy;
+    private final OverflowPolicy overflowPolicy;
+    private final CoalescingRingBuffer<K, V> spill; // only for OverflowPolicy.SPILL
+    private final DeferringValueHandler<K, V> deferringHandler;
 
     private volatile long firstWrite = 1; // the oldest slot that is is safe to write to
     private final AtomicLong lastRead = new AtomicLong(0); // the newest slot that it is safe to overwrite
+    private final AtomicLong pollCount = new AtomicLong(0);
+    private final AtomicLong drainedCount = new AtomicLong(0);
 
-    @SuppressWarnings("unchecked")
     public CoalescingRingBuffer(int capacity) {
+        this(capacity, new BusySpinWaitStrategy());
+    }
+
+    public CoalescingRingBuffer(int capacity, WaitStrategy waitStrategy) {
+        this(capacity, waitStrategy, OverflowPolicy.REJECT);
+    }
+
+    public CoalescingRingBuffer(int capacity, WaitStrategy waitStrategy, OverflowPolicy overflowPolicy) {
+        this(capacity, waitStrategy, overflowPolicy, capacity);
+    }
+
+    /**
+     * @param spillCapacity the capacity of the overflow ring, only used by {@link OverflowPolicy#SPILL}
+     */
+    @SuppressWarnings("unchecked")
+    public CoalescingRingBuffer(int capacity, WaitStrategy waitStrategy, OverflowPolicy overflowPolicy, int spillCapacity) {
         this.capacity = nextPowerOfTwo(capacity);
         this.mask = this.capacity - 1;
+        this.waitStrategy = waitStrategy;
+        this.overflowPolicy = overflowPolicy;
 
+        boolean spills = overflowPolicy == OverflowPolicy.SPILL;
+        this.spill = spills ? new CoalescingRingBuffer<K, V>(spillCapacity, waitStrategy) : null;
+        this.deferringHandler = spills ? new DeferringValueHandler<K, V>() : null;
 
         this.keys = (K[]) new Object[this.capacity];
         this.atomicReferenceArray = new AtomicReferenceArray<V>(this.capacity);
@@ -47,16 +86,68 @@ public final class CoalescingRingBuffer<K, V> implements CoalescingBuffer<K, V>
         return 1 << (32 - Integer.numberOfLeadingZeros(value - 1));
     }
 
-    public int size() {
-        return (int) (nextWrite - lastRead.get() - 1);
+    @Override public int size() {
+        return (int) Math.min(capacity, nextWrite - lastRead.get() - 1); // evicted slots count until the consumer passes them
+    }
+
+    @Override public boolean isEmpty() {
+        return size() == 0 && (spill == null || spill.isEmpty());
     }
 
     public boolean isFull() {
-        return size() == capacity;
+        return size() >= capacity;
+    }
+
+    @Override public int capacity() {
+        return capacity;
+    }
+
+    @Override public long offers() {
+        return coalescedCount.get() + appendCount.get() + rejectionCount.get() + spillCount.get();
+    }
+
+    @Override public long coalescedUpdates() {
+        return coalescedCount.get();
+    }
+
+    @Override public long appends() {
+        return appendCount.get();
+    }
+
+    @Override public long rejections() {
+        return rejectionCount.get();
+    }
+
+    @Override public long overflows() {
+        return overflowCount.get();
+    }
+
+    @Override public long evictions() {
+        return evictionCount.get();
+    }
+
+    @Override public long spills() {
+        return spillCount.get();
+    }
+
+    @Override public long polls() {
+        return pollCount.get();
+    }
+
+    @Override public long elementsDrained() {
+        return drainedCount.get();
+    }
+
+    @Override public int highWaterMark() {
+        return (int) highWaterMark.get();
     }
 
     @Override
     public boolean offer(K key, V value) {
+        if (spill != null && !spill.isEmpty()) {
+            return spill(key, value);
+        }
+
         long nextWrite = this.nextWrite;
 
         for (long readPosition = firstWrite; readPosition < nextWrite; readPosition++) {
@@ -66,6 +157,7 @@ public final class CoalescingRingBuffer<K, V> implements CoalescingBuffer<K, V>
                 atomicReferenceArray.set(index, value);
 
                 if (firstWrite <= readPosition) {  // check that the reader has not read it yet
+                    coalescedCount.lazySet(coalescedCount.get() + 1);
                     return true;
                 } else {
                     break;
@@ -77,16 +169,91 @@ public final class CoalescingRingBuffer<K, V> implements CoalescingBuffer<K, V>
     }
 
     private boolean add(K key, V value) {
-        if (isFull()) {
-            rejectionCount.lazySet(rejectionCount.get() + 1);
-            return false;
+        int size = (int) (nextWrite - lastFreed() - 1);
+
+        if (size == capacity) {
+            overflowCount.lazySet(overflowCount.get() + 1);
+
+            switch (overflowPolicy) {
+                case BLOCK:
+                    if (!awaitRoom()) {
+                        return reject();
+                    }
+                    break;
+                case EVICT_OLDEST:
+                    evictOldest();
+                    break;
+                case SPILL:
+                    return spill(key, value);
+                default:
+                    return reject();
+            }
+
+            size = (int) (nextWrite - lastFreed() - 1);
         }
 
         cleanUp();
         store(key, value);
+
+        appendCount.lazySet(appendCount.get() + 1);
+        if (size + 1 > highWaterMark.get()) {
+            highWaterMark.lazySet(size + 1);
+        }
+
+        return true;
+    }
+
+    private boolean reject() {
+        rejectionCount.lazySet(rejectionCount.get() + 1);
+        return false;
+    }
+
+    private boolean awaitRoom() {
+        while (nextWrite - lastFreed() - 1 == capacity) {
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+
+            Thread.yield();
+        }
+
         return true;
     }
 
+    /**
+     * takes the oldest slot the consumer has not claimed by moving firstWrite past it, the same CAS the consumer claims with
+     */
+    private void evictOldest() {
+        while (true) {
+            long oldest = lastFreed() + 1;
+
+            if (nextWrite - oldest < capacity) {
+                return; // the consumer freed a slot meanwhile
+            }
+
+            if (FIRST_WRITE.compareAndSet(this, oldest, oldest + 1)) {
+                lastEvicted = oldest;
+                evictionCount.lazySet(evictionCount.get() + 1);
+                return;
+            }
+
+            Thread.yield(); // the consumer is reading it, so it is about to be freed anyway
+        }
+    }
+
+    private boolean spill(K key, V value) {
+        if (spill.offer(key, value)) {
+            spillCount.lazySet(spillCount.get() + 1);
+            return true;
+        }
+
+        return reject();
+    }
+
+    private long lastFreed() {
+        return Math.max(lastRead.get(), lastEvicted);
+    }
+
     private void store(K key, V value) {
         long nextWrite = this.nextWrite;
         int index = mask(nextWrite);
@@ -95,25 +262,132 @@ public final class CoalescingRingBuffer<K, V> implements CoalescingBuffer<K, V>
         atomicReferenceArray.set(index, value);
 
         this.nextWrite = nextWrite + 1;
+        waitStrategy.signalAllWhenBlocking();
     }
 
     @Override public int poll(Collection<? super V> bucket) {
-        long lastRead = this.lastRead.get();
-        long nextWrite = this.nextWrite;
-        firstWrite = nextWrite;
+        return poll(bucket, Integer.MAX_VALUE);
+    }
+
+    @Override public int poll(Collection<? super V> bucket, int maxElements) {
+        PollLimits.checkMaxElements(maxElements);
+        long firstRead;
+        long readLimit;
 
-        for (long readIndex = lastRead + 1; readIndex < nextWrite; readIndex++) {
+        do {
+            firstRead = firstWrite;
+            readLimit = Math.min(nextWrite, firstRead + maxElements);
+        } while (!claim(firstRead, readLimit));
+
+        for (long readIndex = firstRead; readIndex < readLimit; readIndex++) {
             int index = mask(readIndex);
             bucket.add(atomicReferenceArray.get(index));
         }
 
-        // this.lastRead = nextWrite - 1;
+        // this.lastRead = readLimit - 1;
+        this.lastRead.lazySet(readLimit - 1);
+        int count = (int) (readLimit - firstRead);
+
+        if (spill != null && count < maxElements) {
+            count += spill.poll(bucket, maxElements - count);
+        }
+
+        return drained(count);
+    }
+
+    @Override public int poll(V[] values, int offset, int maxElements) {
+        int maxValues = PollLimits.maxValues(values, offset, maxElements);
+        long firstRead;
+        long readLimit;
+
+        do {
+            firstRead = firstWrite;
+            readLimit = Math.min(nextWrite, firstRead + maxValues);
+        } while (!claim(firstRead, readLimit));
+
+        for (long readIndex = firstRead; readIndex < readLimit; readIndex++) {
+            int index = mask(readIndex);
+            values[offset++] = atomicReferenceArray.get(index);
+        }
+
+        this.lastRead.lazySet(readLimit - 1);
+        int count = (int) (readLimit - firstRead);
+
+        if (spill != null && count < maxValues) {
+            count += spill.poll(values, offset, maxValues - count);
+        }
+
+        return drained(count);
+    }
+
+    /**
+     * moves firstWrite to readLimit, by CAS if the producer may be evicting firstRead at the same time
+     */
+    private boolean claim(long firstRead, long readLimit) {
+        if (overflowPolicy == OverflowPolicy.EVICT_OLDEST) {
+            return FIRST_WRITE.compareAndSet(this, firstRead, readLimit);
+        }
+
+        firstWrite = readLimit;
+        return true;
+    }
+
+    @Override public int poll(Collection<? super V> bucket, long timeout, TimeUnit unit) throws InterruptedException {
+        if (waitStrategy.waitFor(this, unit.toNanos(timeout))) {
+            return poll(bucket);
+        }
+
+        return 0;
+    }
+
+    @Override public int take(Collection<? super V> bucket) throws InterruptedException {
+        int count;
+
+        while ((count = poll(bucket)) == 0) {
+            waitStrategy.waitFor(this, Long.MAX_VALUE);
+        }
+
+        return count;
+    }
+
+    @Override public int poll(ValueHandler<? super K, ? super V> handler) {
+        if (spill == null) {
+            return drained(pollRing(handler));
+        }
+
+        deferringHandler.start(handler);
+        int count = pollRing(deferringHandler) + spill.poll(deferringHandler);
+        deferringHandler.flush();
+
+        return drained(count);
+    }
+
+    private int pollRing(ValueHandler<? super K, ? super V> handler) {
+        long firstRead;
+        long nextWrite;
+
+        do {
+            firstRead = firstWrite;
+            nextWrite = this.nextWrite;
+        } while (!claim(firstRead, nextWrite));
+
+        for (long readIndex = firstRead; readIndex < nextWrite; readIndex++) {
+            int index = mask(readIndex);
+            handler.onValue(keys[index], atomicReferenceArray.get(index), readIndex == nextWrite - 1);
+        }
+
         this.lastRead.lazySet(nextWrite - 1);
-        return (int) (nextWrite - lastRead - 1);
+        return (int) (nextWrite - firstRead);
+    }
+
+    private int drained(int count) {
+        pollCount.lazySet(pollCount.get() + 1);
+        drainedCount.lazySet(drainedCount.get() + count);
+        return count;
     }
 
     private void cleanUp() {
-        long lastRead = this.lastRead.get();
+        long lastRead = lastFreed();
 
         if (lastRead == lastCleaned) {
             return;
@@ -17,6 +17,11 @@ package com.lmax.collections.coalescing.ring.buffer;
 import java.util.Collection;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * A single writer coalescing ring that can also carry values which must never be collapsed, such as
+ * trading halts, in the same ordered stream as the values that can. What happens to a pending value
+ * when its key is offered again is set by the {@link ConflationPolicy}.
+ */
 // Performance = 46 MOPS
 public final class CoalescingSingleWriterBuffer<K, V> implements CoalescingBuffer<K, V> {
 
@@ -26,18 +31,25 @@ public final class CoalescingSingleWriterBuffer<K, V> implements CoalescingBuffe
     private final AtomicReferenceArray<V> atomicReferenceArray;
 
     @SuppressWarnings("unchecked")
-    private final K nonCollapsibleKey = (K) new Object();
+    private final K nonCollapsibleKey = (K) new Object(); // equal to no other key, so nothing ever collapses onto it
+    @SuppressWarnings("unchecked")
+    private final V skipped = (V) new Object(); // marks a value that has moved to the tail
     private final int mask;
     private final int capacity;
+    private final ConflationPolicy policy;
 
     private volatile long firstWrite = 1; // the oldest slot that is is safe to write to
     private volatile long lastRead = 0; // the newest slot that it is safe to overwrite
 
-    @SuppressWarnings("unchecked")
     public CoalescingSingleWriterBuffer(int capacity) {
+        this(capacity, ConflationPolicy.LATEST_IN_PLACE);
+    }
+
+    @SuppressWarnings("unchecked")
+    public CoalescingSingleWriterBuffer(int capacity, ConflationPolicy policy) {
         this.capacity = nextPowerOfTwo(capacity);
         this.mask = this.capacity - 1;
-
+        this.policy = policy;
 
         this.keys = (K[]) new Object[this.capacity];
         this.atomicReferenceArray = new AtomicReferenceArray<V>(this.capacity);
@@ -51,6 +63,10 @@ public final class CoalescingSingleWriterBuffer<K, V> implements CoalescingBuffe
         return (int) (nextWrite - lastRead - 1);
     }
 
+    @Override public boolean isEmpty() {
+        return size() == 0;
+    }
+
     public boolean isFull() {
         return size() == capacity;
     }
@@ -63,7 +79,20 @@ public final class CoalescingSingleWriterBuffer<K, V> implements CoalescingBuffe
             int index = computeIndex(updatePosition);
 
             if(key.equals(keys[index])) {
-                atomicReferenceArray.set(index, value);
+                if (policy == ConflationPolicy.LATEST_MOVED_TO_TAIL) {
+                    if (atomicReferenceArray.get(index) == skipped) {
+                        continue; // already moved, the key is pending further on
+                    }
+
+                    if (!isFull()) {
+                        atomicReferenceArray.set(index, skipped); // a reader that got there first delivers the old value, the new one still follows
+                        break;
+                    }
+                }
+
+                if (policy != ConflationPolicy.FIRST_WINS) {
+                    atomicReferenceArray.set(index, value);
+                }
 
                 if (updatePosition >= firstWrite) {  // check that the reader has not read it yet
                     return true;
@@ -76,6 +105,13 @@ public final class CoalescingSingleWriterBuffer<K, V> implements CoalescingBuffe
         return add(key, value);
     }
 
+    /**
+     * adds a value that is never collapsed, however many times it or its key is offered
+     */
+    public boolean offerNonCollapsible(V value) {
+        return add(nonCollapsibleKey, value);
+    }
+
     private boolean add(K key, V value) {
         if (isFull()) {
             return false;
@@ -97,19 +133,109 @@ public final class CoalescingSingleWriterBuffer<K, V> implements CoalescingBuffe
     }
 
     @Override public int poll(Collection<? super V> bucket) {
+        return poll(bucket, Integer.MAX_VALUE);
+    }
+
+    /**
+     * skipped slots do not count towards maxElements, so after passing any the poll reads on for the values it is
+     * still owed, though never past the nextWrite it saw on entry
+     */
+    @Override public int poll(Collection<? super V> bucket, int maxElements) {
+        PollLimits.checkMaxElements(maxElements);
+        long lastRead = this.lastRead;
+        long nextWrite = this.nextWrite;
+        int count = 0;
+        boolean passedSkipped;
+
+        do {
+            long readLimit = readLimit(lastRead, nextWrite, maxElements - count);
+            firstWrite = readLimit;
+            passedSkipped = false;
+
+            for (long readIndex = lastRead + 1; readIndex < readLimit; readIndex++) {
+                V value = atomicReferenceArray.get(computeIndex(readIndex));
+
+                if (value != skipped) {
+                    bucket.add(value);
+                    count++;
+                } else {
+                    passedSkipped = true;
+                }
+            }
+
+            lastRead = readLimit - 1;
+        } while (passedSkipped && count < maxElements && lastRead < nextWrite - 1);
+
+        this.lastRead = lastRead;
+        return count;
+    }
+
+    @Override public int poll(V[] values, int offset, int maxElements) {
+        int maxValues = PollLimits.maxValues(values, offset, maxElements);
+        long lastRead = this.lastRead;
+        long nextWrite = this.nextWrite;
+        int count = 0;
+        boolean passedSkipped;
+
+        do {
+            long readLimit = readLimit(lastRead, nextWrite, maxValues - count);
+            firstWrite = readLimit;
+            passedSkipped = false;
+
+            for (long readIndex = lastRead + 1; readIndex < readLimit; readIndex++) {
+                V value = atomicReferenceArray.get(computeIndex(readIndex));
+
+                if (value != skipped) {
+                    values[offset + count++] = value;
+                } else {
+                    passedSkipped = true;
+                }
+            }
+
+            lastRead = readLimit - 1;
+        } while (passedSkipped && count < maxValues && lastRead < nextWrite - 1);
+
+        this.lastRead = lastRead;
+        return count;
+    }
+
+    private long readLimit(long lastRead, long nextWrite, int maxElements) {
+        return Math.min(nextWrite, lastRead + 1 + maxElements);
+    }
+
+    /**
+     * non-collapsible values are handed over with a null key
+     */
+    @Override public int poll(ValueHandler<? super K, ? super V> handler) {
         long lastRead = this.lastRead;
         long nextWrite = this.nextWrite;
         firstWrite = nextWrite;
 
+        int count = 0;
+        K heldKey = null;
+        V heldValue = null;
+
         for (long readIndex = lastRead + 1; readIndex < nextWrite; readIndex++) {
             int index = computeIndex(readIndex);
-            // keys[index] = null;
-            // bucket.add(atomicReferenceArray.getAndSet(index, null));
-            bucket.add(atomicReferenceArray.get(index));
+            V value = atomicReferenceArray.get(index);
+
+            if (value != skipped) {
+                if (count++ > 0) {
+                    handler.onValue(heldKey, heldValue, false); // held back until we know whether it ends the batch
+                }
+
+                heldKey = keys[index] == nonCollapsibleKey ? null : keys[index];
+                heldValue = value;
+            }
         }
 
         this.lastRead = nextWrite - 1;
-        return (int) (nextWrite - lastRead - 1);
+
+        if (count > 0) {
+            handler.onValue(heldKey, heldValue, true);
+        }
+
+        return count;
     }
 
     private void cleanUp() {
@@ -12,6 +12,10 @@ public class CoalescingSynchronizedBuffer<K, V> implements CoalescingBuffer<K, V
         this.linkedHashMap = new LinkedHashMap<K, V>(capacity);
     }
 
+    @Override public synchronized boolean isEmpty() {
+        return linkedHashMap.isEmpty();
+    }
+
     @Override public synchronized boolean offer(K key, V value) {
         if (linkedHashMap.containsKey(key)) {
             linkedHashMap.put(key, value);
@@ -37,4 +41,40 @@ public class CoalescingSynchronizedBuffer<K, V> implements CoalescingBuffer<K, V
         return size;
     }
 
+    @Override public synchronized int poll(Collection<? super V> bucket, int maxElements) {
+        PollLimits.checkMaxElements(maxElements);
+        int count = 0;
+
+        for (Iterator<V> values = linkedHashMap.values().iterator(); count < maxElements && values.hasNext(); count++) {
+            bucket.add(values.next());
+            values.remove();
+        }
+
+        return count;
+    }
+
+    @Override public synchronized int poll(V[] values, int offset, int maxElements) {
+        int count = 0;
+        int limit = PollLimits.maxValues(values, offset, maxElements);
+
+        for (Iterator<V> iterator = linkedHashMap.values().iterator(); count < limit && iterator.hasNext(); count++) {
+            values[offset + count] = iterator.next();
+            iterator.remove();
+        }
+
+        return count;
+    }
+
+    @Override public synchronized int poll(ValueHandler<? super K, ? super V> handler) {
+        int size = linkedHashMap.size();
+        int remaining = size;
+
+        for (Map.Entry<K, V> entry : linkedHashMap.entrySet()) {
+            handler.onValue(entry.getKey(), entry.getValue(), --remaining == 0);
+        }
+
+        linkedHashMap.clear();
+        return size;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,207 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Collection;
+
+/**
+ * {@link CoalescingRingBuffer} on plain arrays and fields, with every access given the weakest {@link VarHandle}
+ * mode that keeps it correct instead of the volatile reads and writes of the atomic classes.
+ * <p>
+ * An append publishes the key and value with a release store of nextWrite, which the consumer reads with acquire,
+ * and the consumer hands slots back with a release store of lastRead, so neither side fences on the common path.
+ * Replacing a pending value is the one place that needs more: the producer stores the value and then checks
+ * firstWrite, while the consumer stores firstWrite and then loads the value, and only volatile accesses on both
+ * sides stop each of them missing the other's store. Without a wait strategy to signal there is no blocking poll,
+ * so a consumer that waits should use a {@link CoalescingDispatcher} with a spinning or backoff strategy.
+ */
+public final class CoalescingVarHandleRingBuffer<K, V> implements CoalescingBuffer<K, V> {
+
+    private static final VarHandle NEXT_WRITE;
+    private static final VarHandle FIRST_WRITE;
+    private static final VarHandle LAST_READ;
+    private static final VarHandle REJECTIONS;
+    private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            NEXT_WRITE = lookup.findVarHandle(CoalescingVarHandleRingBuffer.class, "nextWrite", long.class);
+            FIRST_WRITE = lookup.findVarHandle(CoalescingVarHandleRingBuffer.class, "firstWrite", long.class);
+            LAST_READ = lookup.findVarHandle(CoalescingVarHandleRingBuffer.class, "lastRead", long.class);
+            REJECTIONS = lookup.findVarHandle(CoalescingVarHandleRingBuffer.class, "rejectionCount", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private long nextWrite = 1; // the next write index, written by the producer with release
+    private long lastCleaned = 0; // the last index that was nulled out by the producer
+    private long rejectionCount = 0; // written by the producer with opaque
+    private final K[] keys;
+    private final V[] values;
+
+    private final int mask;
+    private final int capacity;
+
+    private long firstWrite = 1; // the oldest slot that is is safe to write to, written by the consumer with volatile
+    private long lastRead = 0; // the newest slot that it is safe to overwrite, written by the consumer with release
+
+    @SuppressWarnings("unchecked")
+    public CoalescingVarHandleRingBuffer(int capacity) {
+        this.capacity = nextPowerOfTwo(capacity);
+        this.mask = this.capacity - 1;
+
+        this.keys = (K[]) new Object[this.capacity];
+        this.values = (V[]) new Object[this.capacity];
+    }
+
+    private int nextPowerOfTwo(int value) {
+        return 1 << (32 - Integer.numberOfLeadingZeros(value - 1));
+    }
+
+    public int size() {
+        return (int) ((long) NEXT_WRITE.getAcquire(this) - (long) LAST_READ.getAcquire(this) - 1);
+    }
+
+    @Override public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean isFull() {
+        return size() == capacity;
+    }
+
+    public long rejections() {
+        return (long) REJECTIONS.getOpaque(this);
+    }
+
+    @Override
+    public boolean offer(K key, V value) {
+        long nextWrite = this.nextWrite; // only the producer writes it
+
+        for (long readPosition = (long) FIRST_WRITE.getAcquire(this); readPosition < nextWrite; readPosition++) {
+            int index = mask(readPosition);
+
+            if(key.equals(keys[index])) {
+                VALUES.setVolatile(values, index, value);
+
+                if ((long) FIRST_WRITE.getVolatile(this) <= readPosition) {  // check that the reader has not read it yet
+                    return true;
+                } else {
+                    break;
+                }
+            }
+        }
+
+        return add(key, value);
+    }
+
+    private boolean add(K key, V value) {
+        long nextWrite = this.nextWrite;
+
+        if (nextWrite - (long) LAST_READ.getAcquire(this) - 1 == capacity) {
+            REJECTIONS.setOpaque(this, rejectionCount + 1);
+            return false;
+        }
+
+        cleanUp();
+        store(nextWrite, key, value);
+        return true;
+    }
+
+    private void store(long nextWrite, K key, V value) {
+        int index = mask(nextWrite);
+
+        keys[index] = key;
+        values[index] = value;
+
+        NEXT_WRITE.setRelease(this, nextWrite + 1); // publishes the key and value
+    }
+
+    @Override public int poll(Collection<? super V> bucket) {
+        return poll(bucket, Integer.MAX_VALUE);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override public int poll(Collection<? super V> bucket, int maxElements) {
+        PollLimits.checkMaxElements(maxElements);
+        long lastRead = this.lastRead; // only the consumer writes it
+        long readLimit = readLimit(lastRead, maxElements);
+        FIRST_WRITE.setVolatile(this, readLimit);
+
+        for (long readIndex = lastRead + 1; readIndex < readLimit; readIndex++) {
+            int index = mask(readIndex);
+            bucket.add((V) VALUES.getVolatile(values, index));
+        }
+
+        LAST_READ.setRelease(this, readLimit - 1);
+        return (int) (readLimit - lastRead - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override public int poll(V[] values, int offset, int maxElements) {
+        long lastRead = this.lastRead;
+        long readLimit = readLimit(lastRead, PollLimits.maxValues(values, offset, maxElements));
+        FIRST_WRITE.setVolatile(this, readLimit);
+
+        for (long readIndex = lastRead + 1; readIndex < readLimit; readIndex++) {
+            int index = mask(readIndex);
+            values[offset++] = (V) VALUES.getVolatile(this.values, index);
+        }
+
+        LAST_READ.setRelease(this, readLimit - 1);
+        return (int) (readLimit - lastRead - 1);
+    }
+
+    private long readLimit(long lastRead, int maxElements) {
+        return Math.min((long) NEXT_WRITE.getAcquire(this), lastRead + 1 + maxElements);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override public int poll(ValueHandler<? super K, ? super V> handler) {
+        long lastRead = this.lastRead;
+        long nextWrite = (long) NEXT_WRITE.getAcquire(this);
+        FIRST_WRITE.setVolatile(this, nextWrite);
+
+        for (long readIndex = lastRead + 1; readIndex < nextWrite; readIndex++) {
+            int index = mask(readIndex);
+            handler.onValue(keys[index], (V) VALUES.getVolatile(values, index), readIndex == nextWrite - 1);
+        }
+
+        LAST_READ.setRelease(this, nextWrite - 1);
+        return (int) (nextWrite - lastRead - 1);
+    }
+
+    /**
+     * plain stores are enough, the consumer only reads these slots again after the release of a later nextWrite
+     */
+    private void cleanUp() {
+        long lastRead = (long) LAST_READ.getAcquire(this);
+
+        while (lastCleaned < lastRead) {
+            int index = mask(++lastCleaned);
+            keys[index] = null;
+            values[index] = null;
+        }
+    }
+
+    private int mask(long value) {
+        return ((int) value) & mask;
+    }
+
+}
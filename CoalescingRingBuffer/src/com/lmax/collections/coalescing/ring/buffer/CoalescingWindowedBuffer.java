@@ -0,0 +1,211 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link CoalescingRingBuffer} that hands the consumer at most one value per key per window, however fast
+ * the consumer polls. The first value of a key goes out on the next poll and opens the key's window; anything
+ * offered for the key while the window is open is held back, coalesced, and the latest value goes out on the
+ * first poll after the window closes, which opens the next one. A window that closes with nothing held is
+ * forgotten, so the next value of its key goes out straight away again.
+ * <p>
+ * The windows live on the consumer's side of the ring and are kept in the order they close, so a poll only
+ * looks at the windows that are due and no timer thread is needed. Offers cost the same as on the ring.
+ */
+public final class CoalescingWindowedBuffer<K, V> implements CoalescingBuffer<K, V> {
+
+    private final CoalescingRingBuffer<K, V> ring;
+    private final long windowNanos;
+    private final Clock clock;
+
+    // everything below is only touched by the consumer
+
+    private final Map<K, Window<K, V>> windows = new HashMap<K, Window<K, V>>(); // every key that is held or has a window open
+    private final ArrayDeque<Window<K, V>> closing = new ArrayDeque<Window<K, V>>(); // open windows, in the order they close
+    private final ArrayDeque<Window<K, V>> ready = new ArrayDeque<Window<K, V>>(); // keys without a window, due on the next poll
+    private int held = 0; // the number of values held back
+
+    private final DeferringValueHandler<K, V> deferringHandler = new DeferringValueHandler<K, V>();
+    private final ValueHandler<K, V> receiver = new ValueHandler<K, V>() {
+        @Override
+        public void onValue(K key, V value, boolean endOfBatch) {
+            receive(key, value);
+        }
+    };
+    private final BucketHandler<K, V> bucketHandler = new BucketHandler<K, V>();
+    private final ArrayHandler<K, V> arrayHandler = new ArrayHandler<K, V>();
+
+    public CoalescingWindowedBuffer(int capacity, long window, TimeUnit unit) {
+        this(capacity, window, unit, new SystemClock());
+    }
+
+    public CoalescingWindowedBuffer(int capacity, long window, TimeUnit unit, Clock clock) {
+        this.ring = new CoalescingRingBuffer<K, V>(capacity);
+        this.windowNanos = unit.toNanos(window);
+        this.clock = clock;
+    }
+
+    /**
+     * the values offered but not yet handed to the consumer, whether still in the ring or held back by a window
+     */
+    public int size() {
+        return ring.size() + held;
+    }
+
+    /**
+     * true if a poll now would find nothing, a window that closes without a value can make it false for one poll too many
+     */
+    @Override public boolean isEmpty() {
+        if (!ring.isEmpty() || !ready.isEmpty()) {
+            return false;
+        }
+
+        Window<K, V> window = closing.peek();
+        return held == 0 || window == null || window.closesAt - clock.nanoTime() > 0;
+    }
+
+    /**
+     * the clock time the oldest open window closes at, or Long.MAX_VALUE if none is open
+     */
+    public long nextWindowCloses() {
+        Window<K, V> window = closing.peek();
+        return window == null ? Long.MAX_VALUE : window.closesAt;
+    }
+
+    @Override
+    public boolean offer(K key, V value) {
+        return ring.offer(key, value);
+    }
+
+    @Override public int poll(Collection<? super V> bucket) {
+        return poll(bucket, Integer.MAX_VALUE);
+    }
+
+    @Override public int poll(Collection<? super V> bucket, int maxElements) {
+        PollLimits.checkMaxElements(maxElements);
+        bucketHandler.bucket = bucket;
+        int count = poll(bucketHandler, maxElements);
+        bucketHandler.bucket = null;
+
+        return count;
+    }
+
+    @Override public int poll(V[] values, int offset, int maxElements) {
+        int maxValues = PollLimits.maxValues(values, offset, maxElements);
+        arrayHandler.values = values;
+        arrayHandler.offset = offset;
+        int count = poll(arrayHandler, maxValues);
+        arrayHandler.values = null;
+
+        return count;
+    }
+
+    @Override public int poll(ValueHandler<? super K, ? super V> handler) {
+        deferringHandler.start(handler);
+        int count = poll(deferringHandler, Integer.MAX_VALUE);
+        deferringHandler.flush();
+
+        return count;
+    }
+
+    private int poll(ValueHandler<? super K, ? super V> handler, int maxElements) {
+        ring.poll(receiver);
+
+        long now = clock.nanoTime();
+        int count = 0;
+        Window<K, V> window;
+
+        while (count < maxElements && (window = ready.poll()) != null) { // includes keys a bounded poll left behind
+            deliver(window, handler, now);
+            count++;
+        }
+
+        while (count < maxElements && (window = closing.peek()) != null && window.closesAt - now <= 0) {
+            closing.poll();
+
+            if (window.value == null) {
+                windows.remove(window.key);
+            } else {
+                deliver(window, handler, now);
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    private void receive(K key, V value) {
+        Window<K, V> window = windows.get(key);
+
+        if (window == null) {
+            window = new Window<K, V>(key);
+            windows.put(key, window);
+            ready.add(window);
+        }
+
+        if (window.value == null) {
+            held++;
+        }
+
+        window.value = value;
+    }
+
+    private void deliver(Window<K, V> window, ValueHandler<? super K, ? super V> handler, long now) {
+        V value = window.value;
+        window.value = null;
+        held--;
+
+        window.closesAt = now + windowNanos;
+        closing.add(window);
+
+        handler.onValue(window.key, value, false);
+    }
+
+    private static final class Window<K, V> {
+        private final K key;
+        private V value; // the latest value held back, or null if there is none
+        private long closesAt;
+
+        private Window(K key) {
+            this.key = key;
+        }
+    }
+
+    private static final class BucketHandler<K, V> implements ValueHandler<K, V> {
+        private Collection<? super V> bucket;
+
+        @Override
+        public void onValue(K key, V value, boolean endOfBatch) {
+            bucket.add(value);
+        }
+    }
+
+    private static final class ArrayHandler<K, V> implements ValueHandler<K, V> {
+        private V[] values;
+        private int offset;
+
+        @Override
+        public void onValue(K key, V value, boolean endOfBatch) {
+            values[offset++] = value;
+        }
+    }
+
+}
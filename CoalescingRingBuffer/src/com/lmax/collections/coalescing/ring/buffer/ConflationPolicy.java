@@ -0,0 +1,38 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+/**
+ * What a buffer does with a value whose key is still waiting to be read.
+ */
+public enum ConflationPolicy {
+
+    /**
+     * the new value replaces the pending one, which keeps its place in the queue
+     */
+    LATEST_IN_PLACE,
+
+    /**
+     * the pending value is dropped and the new one joins the back of the queue,
+     * unless the buffer is full, in which case it is replaced in place
+     */
+    LATEST_MOVED_TO_TAIL,
+
+    /**
+     * the new value is dropped and the pending one is delivered
+     */
+    FIRST_WINS
+
+}
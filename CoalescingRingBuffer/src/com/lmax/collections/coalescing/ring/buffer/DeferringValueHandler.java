@@ -0,0 +1,54 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+/**
+ * Holds each value back until the next one arrives, so that a consumer draining several buffers
+ * one after another can mark only the very last value it hands over as the end of the batch.
+ * Only ever used by the one consumer thread.
+ */
+final class DeferringValueHandler<K, V> implements ValueHandler<K, V> {
+    private ValueHandler<? super K, ? super V> handler;
+    private boolean holding;
+    private K key;
+    private V value;
+
+    void start(ValueHandler<? super K, ? super V> handler) {
+        this.handler = handler;
+        holding = false; // forgets whatever a handler that threw left behind
+    }
+
+    @Override
+    public void onValue(K key, V value, boolean endOfBatch) {
+        if (holding) {
+            handler.onValue(this.key, this.value, false);
+        }
+
+        this.key = key;
+        this.value = value;
+        holding = true;
+    }
+
+    void flush() {
+        if (holding) {
+            handler.onValue(key, value, true);
+        }
+
+        holding = false;
+        key = null;
+        value = null;
+        handler = null;
+    }
+}
@@ -0,0 +1,244 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A coalescing buffer for keys known up front to lie in [0, numberOfKeys), such as instrument ids. Every key owns
+ * a value slot and a dirty bit, so an offer is one store and one atomic OR, it never scans and it never rejects.
+ * A second bitmap marks the dirty words that have bits set, so a poll only visits keys that changed, plus one
+ * word in 64 of the key space.
+ * <p>
+ * Values come out in key order rather than in the order keys first changed, each poll carrying on from the word
+ * the last one stopped in, so no key waits on a consumer that always asks for fewer values than there are.
+ * A key's latest value stays referenced after it has been polled, until it is next offered.
+ * <p>
+ * Delivery is at least once. A poll clears a word of dirty bits before it reads those keys' values, so a value
+ * offered in between is delivered by this poll and, its bit having been set again, by the next one as well.
+ * Reading the values first would be worse, as the bit set for a newer value would then be cleared with it unread.
+ */
+public final class DenseKeyCoalescingBuffer<V> implements IntCoalescingBuffer<V> {
+
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final AtomicReferenceArray<V> values; // the latest value of each key
+    private final long[] dirty; // bit k is set while key k has a value the consumer has not taken
+    private final long[] summary; // bit w is set while dirty word w may have bits set
+    private final int numberOfKeys;
+
+    private int nextWord = 0; // the dirty word the next poll starts from, only touched by the consumer
+    private final DeferringIntValueHandler<V> deferringHandler = new DeferringIntValueHandler<V>();
+    private final BucketHandler<V> bucketHandler = new BucketHandler<V>();
+    private final ArrayHandler<V> arrayHandler = new ArrayHandler<V>();
+
+    public DenseKeyCoalescingBuffer(int numberOfKeys) {
+        this.numberOfKeys = numberOfKeys;
+        this.values = new AtomicReferenceArray<V>(numberOfKeys);
+        this.dirty = new long[wordsFor(numberOfKeys)];
+        this.summary = new long[wordsFor(dirty.length)];
+    }
+
+    private static int wordsFor(int bits) {
+        return Math.max(1, (bits + 63) >>> 6);
+    }
+
+    public int numberOfKeys() {
+        return numberOfKeys;
+    }
+
+    /**
+     * counts the dirty keys, which takes a pass over the whole key space
+     */
+    public int size() {
+        int size = 0;
+
+        for (int word = 0; word < dirty.length; word++) {
+            size += Long.bitCount((long) WORDS.getVolatile(dirty, word));
+        }
+
+        return size;
+    }
+
+    /**
+     * a poll that takes the last dirty bits out of a word can leave its summary bit set, which makes this false for one poll too many
+     */
+    @Override public boolean isEmpty() {
+        for (int word = 0; word < summary.length; word++) {
+            if ((long) WORDS.getVolatile(summary, word) != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @throws IndexOutOfBoundsException if the key is not in [0, numberOfKeys)
+     */
+    @Override
+    public boolean offer(int key, V value) {
+        values.lazySet(key, value); // ordered before the consumer can see the bit by the atomic OR that sets it
+        markDirty(key >>> 6, 1L << key);
+        return true;
+    }
+
+    private void markDirty(int word, long bits) {
+        long previous = (long) WORDS.getAndBitwiseOr(dirty, word, bits);
+
+        if (previous == 0) {
+            WORDS.getAndBitwiseOr(summary, word >>> 6, 1L << word);
+        }
+    }
+
+    @Override public int poll(Collection<? super V> bucket) {
+        return poll(bucket, Integer.MAX_VALUE);
+    }
+
+    @Override public int poll(Collection<? super V> bucket, int maxElements) {
+        PollLimits.checkMaxElements(maxElements);
+        bucketHandler.bucket = bucket;
+        int count = drain(bucketHandler, maxElements);
+        bucketHandler.bucket = null;
+
+        return count;
+    }
+
+    @Override public int poll(V[] values, int offset, int maxElements) {
+        int maxValues = PollLimits.maxValues(values, offset, maxElements);
+        arrayHandler.values = values;
+        arrayHandler.offset = offset;
+        int count = drain(arrayHandler, maxValues);
+        arrayHandler.values = null;
+
+        return count;
+    }
+
+    @Override public int poll(IntValueHandler<? super V> handler) {
+        deferringHandler.start(handler);
+        int count = drain(deferringHandler, Integer.MAX_VALUE);
+        deferringHandler.flush();
+
+        return count;
+    }
+
+    /**
+     * takes whole summary and dirty words, starting at nextWord and wrapping round to the summary bits below it,
+     * and puts back the bits a bounded poll had no room for
+     */
+    private int drain(IntValueHandler<? super V> handler, int maxElements) {
+        int summaryWords = summary.length;
+        int startSummaryWord = nextWord >>> 6;
+        long firstPass = -1L << nextWord; // the summary bits from nextWord up, the rest are taken on the way back round
+        int count = 0;
+
+        for (int i = 0; i <= summaryWords && count < maxElements; i++) {
+            int summaryWord = startSummaryWord + i < summaryWords ? startSummaryWord + i : startSummaryWord + i - summaryWords;
+            long mask = i == 0 ? firstPass : i == summaryWords ? ~firstPass : -1L;
+
+            if (((long) WORDS.getVolatile(summary, summaryWord) & mask) == 0) {
+                continue;
+            }
+
+            long words = mask == -1L ?
+                    (long) WORDS.getAndSet(summary, summaryWord, 0L) :
+                    (long) WORDS.getAndBitwiseAnd(summary, summaryWord, ~mask) & mask;
+
+            while (words != 0 && count < maxElements) {
+                int word = (summaryWord << 6) + Long.numberOfTrailingZeros(words);
+                words &= words - 1;
+
+                long bits = (long) WORDS.getAndSet(dirty, word, 0L);
+
+                while (bits != 0 && count < maxElements) {
+                    int key = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+
+                    handler.onValue(key, values.get(key), false);
+                    count++;
+                }
+
+                if (bits != 0) {
+                    markDirty(word, bits);
+                    nextWord = word;
+                } else {
+                    nextWord = word + 1 < dirty.length ? word + 1 : 0;
+                }
+            }
+
+            if (words != 0) {
+                WORDS.getAndBitwiseOr(summary, summaryWord, words);
+            }
+        }
+
+        return count;
+    }
+
+    private static final class DeferringIntValueHandler<V> implements IntValueHandler<V> {
+        private IntValueHandler<? super V> handler;
+        private boolean holding;
+        private int key;
+        private V value;
+
+        void start(IntValueHandler<? super V> handler) {
+            this.handler = handler;
+            holding = false;
+        }
+
+        @Override
+        public void onValue(int key, V value, boolean endOfBatch) {
+            if (holding) {
+                handler.onValue(this.key, this.value, false);
+            }
+
+            this.key = key;
+            this.value = value;
+            holding = true;
+        }
+
+        void flush() {
+            if (holding) {
+                handler.onValue(key, value, true);
+            }
+
+            holding = false;
+            value = null;
+            handler = null;
+        }
+    }
+
+    private static final class BucketHandler<V> implements IntValueHandler<V> {
+        private Collection<? super V> bucket;
+
+        @Override
+        public void onValue(int key, V value, boolean endOfBatch) {
+            bucket.add(value);
+        }
+    }
+
+    private static final class ArrayHandler<V> implements IntValueHandler<V> {
+        private V[] values;
+        private int offset;
+
+        @Override
+        public void onValue(int key, V value, boolean endOfBatch) {
+            values[offset++] = value;
+        }
+    }
+
+}
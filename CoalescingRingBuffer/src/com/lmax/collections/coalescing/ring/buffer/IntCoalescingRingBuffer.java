@@ -0,0 +1,173 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A {@link CoalescingRingBuffer} keyed by a primitive int, so offering never boxes the key
+ * and the slot scan compares keys with {@code ==} instead of a virtual {@code equals} call.
+ */
+public final class IntCoalescingRingBuffer<V> implements IntCoalescingBuffer<V> {
+
+    private volatile long nextWrite = 1; // the next write index
+    private long lastCleaned = 0; // the last index that was nulled out by the producer
+    private final AtomicLong rejectionCount = new AtomicLong(0);
+    private final int[] keys;
+    private final AtomicReferenceArray<V> atomicReferenceArray;
+
+    private final int mask;
+    private final int capacity;
+
+    private volatile long firstWrite = 1; // the oldest slot that is is safe to write to
+    private final AtomicLong lastRead = new AtomicLong(0); // the newest slot that it is safe to overwrite
+
+    public IntCoalescingRingBuffer(int capacity) {
+        this.capacity = nextPowerOfTwo(capacity);
+        this.mask = this.capacity - 1;
+
+        this.keys = new int[this.capacity];
+        this.atomicReferenceArray = new AtomicReferenceArray<V>(this.capacity);
+    }
+
+    private int nextPowerOfTwo(int value) {
+        return 1 << (32 - Integer.numberOfLeadingZeros(value - 1));
+    }
+
+    public int size() {
+        return (int) (nextWrite - lastRead.get() - 1);
+    }
+
+    @Override public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean isFull() {
+        return size() == capacity;
+    }
+
+    @Override
+    public boolean offer(int key, V value) {
+        long nextWrite = this.nextWrite;
+
+        for (long readPosition = firstWrite; readPosition < nextWrite; readPosition++) {
+            int index = mask(readPosition);
+
+            if (key == keys[index]) {
+                atomicReferenceArray.set(index, value);
+
+                if (firstWrite <= readPosition) {  // check that the reader has not read it yet
+                    return true;
+                } else {
+                    break;
+                }
+            }
+        }
+
+        return add(key, value);
+    }
+
+    private boolean add(int key, V value) {
+        if (isFull()) {
+            rejectionCount.lazySet(rejectionCount.get() + 1);
+            return false;
+        }
+
+        cleanUp();
+        store(key, value);
+        return true;
+    }
+
+    private void store(int key, V value) {
+        long nextWrite = this.nextWrite;
+        int index = mask(nextWrite);
+
+        keys[index] = key;
+        atomicReferenceArray.set(index, value);
+
+        this.nextWrite = nextWrite + 1;
+    }
+
+    @Override public int poll(Collection<? super V> bucket) {
+        return poll(bucket, Integer.MAX_VALUE);
+    }
+
+    @Override public int poll(Collection<? super V> bucket, int maxElements) {
+        PollLimits.checkMaxElements(maxElements);
+        long lastRead = this.lastRead.get();
+        long readLimit = readLimit(lastRead, maxElements);
+        firstWrite = readLimit;
+
+        for (long readIndex = lastRead + 1; readIndex < readLimit; readIndex++) {
+            int index = mask(readIndex);
+            bucket.add(atomicReferenceArray.get(index));
+        }
+
+        this.lastRead.lazySet(readLimit - 1);
+        return (int) (readLimit - lastRead - 1);
+    }
+
+    @Override public int poll(V[] values, int offset, int maxElements) {
+        long lastRead = this.lastRead.get();
+        long readLimit = readLimit(lastRead, PollLimits.maxValues(values, offset, maxElements));
+        firstWrite = readLimit;
+
+        for (long readIndex = lastRead + 1; readIndex < readLimit; readIndex++) {
+            int index = mask(readIndex);
+            values[offset++] = atomicReferenceArray.get(index);
+        }
+
+        this.lastRead.lazySet(readLimit - 1);
+        return (int) (readLimit - lastRead - 1);
+    }
+
+    private long readLimit(long lastRead, int maxElements) {
+        return Math.min(nextWrite, lastRead + 1 + maxElements);
+    }
+
+    @Override public int poll(IntValueHandler<? super V> handler) {
+        long lastRead = this.lastRead.get();
+        long nextWrite = this.nextWrite;
+        firstWrite = nextWrite;
+
+        for (long readIndex = lastRead + 1; readIndex < nextWrite; readIndex++) {
+            int index = mask(readIndex);
+            handler.onValue(keys[index], atomicReferenceArray.get(index), readIndex == nextWrite - 1);
+        }
+
+        this.lastRead.lazySet(nextWrite - 1);
+        return (int) (nextWrite - lastRead - 1);
+    }
+
+    private void cleanUp() {
+        long lastRead = this.lastRead.get();
+
+        if (lastRead == lastCleaned) {
+            return;
+        }
+
+        while (lastCleaned < lastRead) {
+            int index = mask(++lastCleaned);
+            atomicReferenceArray.lazySet(index, null); // keys are primitives, so only the values can leak
+        }
+    }
+
+    private int mask(long value) {
+        return ((int) value) & mask;
+    }
+
+}
@@ -0,0 +1,31 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import java.util.Collection;
+
+public interface LongCoalescingBuffer<V> extends Pollable {
+
+    boolean offer(long key, V value);
+
+    int poll(Collection<? super V> bucket);
+
+    int poll(Collection<? super V> bucket, int maxElements);
+
+    int poll(V[] values, int offset, int maxElements);
+
+    int poll(LongValueHandler<? super V> handler);
+
+}
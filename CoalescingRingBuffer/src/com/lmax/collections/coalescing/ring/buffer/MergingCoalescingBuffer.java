@@ -0,0 +1,31 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import java.util.function.BiFunction;
+
+/**
+ * A coalescing buffer that can combine a new value with the one still pending for its key,
+ * for values such as deltas or counters that cannot simply replace each other.
+ */
+public interface MergingCoalescingBuffer<K, V> extends CoalescingBuffer<K, V> {
+
+    /**
+     * replaces the pending value for the key with merger.apply(pending, value), or adds value
+     * as a new entry if nothing is pending or the consumer takes the pending value first
+     */
+    boolean offer(K key, V value, BiFunction<? super V, ? super V, ? extends V> merger);
+
+}
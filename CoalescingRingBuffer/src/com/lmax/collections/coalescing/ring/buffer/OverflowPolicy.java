@@ -0,0 +1,43 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+/**
+ * What a {@link CoalescingRingBuffer} does with a new key when it is full.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * the offer returns false
+     */
+    REJECT,
+
+    /**
+     * the producer yields until the consumer frees a slot, or rejects the value if it is interrupted
+     */
+    BLOCK,
+
+    /**
+     * the oldest value the consumer has not started reading is dropped to make room
+     */
+    EVICT_OLDEST,
+
+    /**
+     * the value goes to a bounded overflow ring, which the consumer drains straight after the main one;
+     * until it has been drained every offer goes there, so that nothing overtakes what has spilled
+     */
+    SPILL
+
+}
@@ -0,0 +1,79 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// the JVM lays out superclass fields before subclass fields, so each group below gets cache lines of its own
+
+abstract class PaddedRingBufferPad0 {
+    long p01, p02, p03, p04, p05, p06, p07;
+}
+
+abstract class PaddedRingBufferConfiguration<K, V> extends PaddedRingBufferPad0 {
+    final K[] keys;
+    final AtomicReferenceArray<V> atomicReferenceArray;
+    final int mask;
+    final int capacity;
+
+    @SuppressWarnings("unchecked")
+    PaddedRingBufferConfiguration(int capacity) {
+        this.capacity = 1 << (32 - Integer.numberOfLeadingZeros(capacity - 1));
+        this.mask = this.capacity - 1;
+
+        this.keys = (K[]) new Object[this.capacity];
+        this.atomicReferenceArray = new AtomicReferenceArray<V>(this.capacity);
+    }
+}
+
+abstract class PaddedRingBufferPad1<K, V> extends PaddedRingBufferConfiguration<K, V> {
+    long p11, p12, p13, p14, p15, p16, p17;
+
+    PaddedRingBufferPad1(int capacity) {
+        super(capacity);
+    }
+}
+
+abstract class PaddedRingBufferProducerFields<K, V> extends PaddedRingBufferPad1<K, V> {
+    volatile long nextWrite = 1; // the next write index
+    long lastCleaned = 0; // the last index that was nulled out by the producer
+    long lastReadCache = 0; // the producer's last look at lastRead, refreshed once everything up to it is cleaned, or when the buffer seems full
+
+    PaddedRingBufferProducerFields(int capacity) {
+        super(capacity);
+    }
+}
+
+abstract class PaddedRingBufferPad2<K, V> extends PaddedRingBufferProducerFields<K, V> {
+    long p21, p22, p23, p24, p25, p26, p27;
+
+    PaddedRingBufferPad2(int capacity) {
+        super(capacity);
+    }
+}
+
+abstract class PaddedRingBufferConsumerFields<K, V> extends PaddedRingBufferPad2<K, V> {
+    @SuppressWarnings("rawtypes")
+    static final AtomicLongFieldUpdater<PaddedRingBufferConsumerFields> LAST_READ =
+            AtomicLongFieldUpdater.newUpdater(PaddedRingBufferConsumerFields.class, "lastRead");
+
+    volatile long firstWrite = 1; // the oldest slot that is is safe to write to
+    volatile long lastRead = 0; // the newest slot that it is safe to overwrite
+
+    PaddedRingBufferConsumerFields(int capacity) {
+        super(capacity);
+    }
+}
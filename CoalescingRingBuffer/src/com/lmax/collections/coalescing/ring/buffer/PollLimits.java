@@ -0,0 +1,46 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+/**
+ * argument checks for the bounded polls, made before a poll moves any sequence
+ */
+final class PollLimits {
+
+    private PollLimits() {
+    }
+
+    static int checkMaxElements(int maxElements) {
+        if (maxElements < 0) {
+            throw new IllegalArgumentException("maxElements must not be negative, not " + maxElements);
+        }
+
+        return maxElements;
+    }
+
+    /**
+     * the most values a poll may put into values from offset on
+     */
+    static int maxValues(Object[] values, int offset, int maxElements) {
+        checkMaxElements(maxElements);
+
+        if (offset < 0 || offset > values.length) {
+            throw new IndexOutOfBoundsException("offset " + offset + " is outside an array of length " + values.length);
+        }
+
+        return Math.min(maxElements, values.length - offset);
+    }
+
+}
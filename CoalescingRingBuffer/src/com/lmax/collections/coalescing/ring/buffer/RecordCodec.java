@@ -0,0 +1,31 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes a value's fields straight into a fixed length record of an off-heap buffer.
+ */
+public interface RecordCodec<V> {
+
+    /**
+     * the number of bytes every record takes, the same for every value
+     */
+    int recordLength();
+
+    void write(V value, ByteBuffer buffer, int offset);
+
+}
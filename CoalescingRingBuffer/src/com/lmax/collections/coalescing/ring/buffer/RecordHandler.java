@@ -0,0 +1,27 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receives each record drained from a {@link CoalescingOffHeapBuffer}. The record is only valid until
+ * onRecord returns, so wrap a flyweight around it rather than keep hold of the buffer.
+ */
+public interface RecordHandler {
+
+    void onRecord(long key, ByteBuffer buffer, int offset, boolean endOfBatch);
+
+}
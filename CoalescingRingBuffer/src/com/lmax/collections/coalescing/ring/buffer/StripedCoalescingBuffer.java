@@ -0,0 +1,130 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import java.util.Collection;
+
+/**
+ * Spreads keys by hash over independent {@link CoalescingRingBuffer} stripes, so a pool of producers
+ * that partitions its keys the same way never shares a buffer. Each stripe is still single writer:
+ * every key must only ever be offered by the one thread that owns its {@link #stripeFor stripe}.
+ * Each poll drains the stripes round robin, starting one stripe further on than the last poll,
+ * so a bounded poll does not always favour the first stripe.
+ */
+public final class StripedCoalescingBuffer<K, V> implements CoalescingBuffer<K, V> {
+
+    private final CoalescingRingBuffer<K, V>[] stripes;
+    private final int mask;
+    private final DeferringValueHandler<K, V> deferringHandler = new DeferringValueHandler<K, V>();
+    private int firstStripe; // the stripe the next poll starts from, only touched by the consumer
+
+    public StripedCoalescingBuffer(int numberOfStripes, int capacityPerStripe) {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        CoalescingRingBuffer<K, V>[] stripes = new CoalescingRingBuffer[nextPowerOfTwo(numberOfStripes)];
+        this.stripes = stripes;
+        this.mask = stripes.length - 1;
+
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new CoalescingRingBuffer<K, V>(capacityPerStripe);
+        }
+    }
+
+    private int nextPowerOfTwo(int value) {
+        return 1 << (32 - Integer.numberOfLeadingZeros(value - 1));
+    }
+
+    public int numberOfStripes() {
+        return stripes.length;
+    }
+
+    public int stripeFor(K key) {
+        int hash = key.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    public int size() {
+        int size = 0;
+
+        for (CoalescingRingBuffer<K, V> stripe : stripes) {
+            size += stripe.size();
+        }
+
+        return size;
+    }
+
+    @Override public boolean isEmpty() {
+        for (CoalescingRingBuffer<K, V> stripe : stripes) {
+            if (!stripe.isEmpty()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean offer(K key, V value) {
+        return stripes[stripeFor(key)].offer(key, value);
+    }
+
+    @Override public int poll(Collection<? super V> bucket) {
+        return poll(bucket, Integer.MAX_VALUE);
+    }
+
+    @Override public int poll(Collection<? super V> bucket, int maxElements) {
+        PollLimits.checkMaxElements(maxElements);
+        int firstStripe = nextFirstStripe();
+        int count = 0;
+
+        for (int i = 0; i < stripes.length && count < maxElements; i++) {
+            count += stripes[(firstStripe + i) & mask].poll(bucket, maxElements - count);
+        }
+
+        return count;
+    }
+
+    @Override public int poll(V[] values, int offset, int maxElements) {
+        int maxValues = PollLimits.maxValues(values, offset, maxElements);
+        int firstStripe = nextFirstStripe();
+        int count = 0;
+
+        for (int i = 0; i < stripes.length && count < maxValues; i++) {
+            count += stripes[(firstStripe + i) & mask].poll(values, offset + count, maxValues - count);
+        }
+
+        return count;
+    }
+
+    @Override public int poll(ValueHandler<? super K, ? super V> handler) {
+        int firstStripe = nextFirstStripe();
+        int count = 0;
+
+        deferringHandler.start(handler);
+
+        for (int i = 0; i < stripes.length; i++) {
+            count += stripes[(firstStripe + i) & mask].poll(deferringHandler);
+        }
+
+        deferringHandler.flush();
+        return count;
+    }
+
+    private int nextFirstStripe() {
+        int firstStripe = this.firstStripe;
+        this.firstStripe = (firstStripe + 1) & mask;
+        return firstStripe;
+    }
+
+}
@@ -0,0 +1,30 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+/**
+ * How a consumer waits for a {@link Pollable} to have values. Producers call {@link #signalAllWhenBlocking()}
+ * after appending, which only costs anything for strategies where the consumer really blocks.
+ */
+public interface WaitStrategy {
+
+    /**
+     * returns true once the pollable has values, or false if the timeout passed first
+     */
+    boolean waitFor(Pollable pollable, long timeoutNanos) throws InterruptedException;
+
+    void signalAllWhenBlocking();
+
+}
@@ -0,0 +1,103 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CoalescingBufferFactoryTest {
+
+    @Test
+    public void shouldPickTheVarHandleRingForASingleProducerThatNeverWaits() {
+        assertBuilds(CoalescingVarHandleRingBuffer.class, CoalescingBufferFactory.<Long, String>builder().build());
+    }
+
+    @Test
+    public void shouldPickThePaddedRingWhenTheConsumerWaits() {
+        assertBuilds(CoalescingPaddedRingBuffer.class, builder().waitStrategy(new BlockingWaitStrategy()).build());
+        assertBuilds(CoalescingPaddedRingBuffer.class, builder().buildBlocking());
+    }
+
+    @Test
+    public void shouldPickTheMultiWriterBufferForMultipleProducers() {
+        assertBuilds(CoalescingMultiWriterBuffer.class, builder().multipleProducers().build());
+    }
+
+    @Test
+    public void shouldPickTheGrowableRingWhenTheBufferMayGrow() {
+        CoalescingBuffer<Long, String> buffer = builder().capacity(16).growable(1024).build();
+
+        assertBuilds(CoalescingGrowableRingBuffer.class, buffer);
+        assertEquals(16, ((CoalescingGrowableRingBuffer<Long, String>) buffer).capacity());
+    }
+
+    @Test
+    public void shouldPickTheRingBufferForStatisticsOrAnotherOverflowPolicy() {
+        assertTrue(builder().statistics(true).build() instanceof CoalescingBufferStatistics);
+        assertBuilds(CoalescingRingBuffer.class, builder().overflowPolicy(OverflowPolicy.EVICT_OLDEST).build());
+    }
+
+    @Test
+    public void shouldPickThePrimitiveBuffersForPrimitiveKeys() {
+        assertBuilds(LongCoalescingRingBuffer.class, builder().buildForLongKeys());
+        assertBuilds(DenseKeyCoalescingBuffer.class, builder().multipleProducers().buildForDenseIntKeys(100));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRefuseAGrowableBufferForMultipleProducers() {
+        builder().multipleProducers().capacity(16).growable(1024).build();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRefuseStatisticsForMultipleProducers() {
+        builder().multipleProducers().statistics(true).build();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRefuseMultipleProducersForLongKeys() {
+        builder().multipleProducers().buildForLongKeys();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRefuseToWaitOnDenseIntKeys() {
+        builder().waitStrategy(new YieldingWaitStrategy()).buildForDenseIntKeys(100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRefuseANonPositiveCapacity() {
+        builder().capacity(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRefuseToGrowNoFurtherThanTheCapacity() {
+        builder().capacity(16).growable(16);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRefuseACapacityThatLeavesAGrowableBufferNoRoomToGrow() {
+        builder().growable(2048).capacity(2048);
+    }
+
+    private static CoalescingBufferFactory.Builder<Long, String> builder() {
+        return CoalescingBufferFactory.builder();
+    }
+
+    private static void assertBuilds(Class<?> expected, Object buffer) {
+        assertEquals(expected, buffer.getClass());
+    }
+
+}
@@ -0,0 +1,91 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class CoalescingBufferStatisticsTest {
+
+    @Test
+    public void shouldCountEveryKindOfOffer() {
+        CoalescingRingBuffer<Long, String> buffer = new CoalescingRingBuffer<Long, String>(2);
+
+        buffer.offer(1L, "1");
+        buffer.offer(2L, "2");
+        buffer.offer(1L, "1'");
+        assertFalse(buffer.offer(3L, "3"));
+
+        assertEquals(4, buffer.offers());
+        assertEquals(2, buffer.appends());
+        assertEquals(1, buffer.coalescedUpdates());
+        assertEquals(1, buffer.rejections());
+    }
+
+    @Test
+    public void shouldCountPollsAndWhatTheyDrained() {
+        CoalescingRingBuffer<Long, String> buffer = new CoalescingRingBuffer<Long, String>(8);
+        List<String> bucket = new ArrayList<String>();
+
+        buffer.offer(1L, "1");
+        buffer.offer(2L, "2");
+        buffer.poll(bucket, 1);
+        buffer.poll(bucket);
+        buffer.poll(bucket);
+
+        assertEquals(3, buffer.polls());
+        assertEquals(2, buffer.elementsDrained());
+    }
+
+    @Test
+    public void shouldRememberTheLargestSizeAfterTheBufferHasBeenDrained() {
+        CoalescingRingBuffer<Long, String> buffer = new CoalescingRingBuffer<Long, String>(8);
+
+        buffer.offer(1L, "1");
+        buffer.offer(2L, "2");
+        buffer.offer(3L, "3");
+        buffer.poll(new ArrayList<String>());
+        buffer.offer(4L, "4");
+
+        assertEquals(1, buffer.size());
+        assertEquals(3, buffer.highWaterMark());
+    }
+
+    @Test
+    public void shouldPublishStatisticsThroughJmx() throws Exception {
+        CoalescingRingBuffer<Long, String> buffer = new CoalescingRingBuffer<Long, String>(8);
+        buffer.offer(1L, "1");
+        buffer.offer(1L, "1'");
+
+        ObjectName name = CoalescingBufferStatisticsMBeans.register("prices", buffer);
+
+        try {
+            assertEquals(2L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Offers"));
+            assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "CoalescedUpdates"));
+            assertEquals(1, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Size"));
+            assertEquals(8, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Capacity"));
+        } finally {
+            CoalescingBufferStatisticsMBeans.unregister("prices");
+        }
+    }
+
+}
@@ -0,0 +1,199 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CoalescingDispatcherTest {
+
+    private static final ThreadFactory THREADS = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    private final List<String> handled = Collections.synchronizedList(new ArrayList<String>());
+    private final List<String> ends = Collections.synchronizedList(new ArrayList<String>());
+
+    private final ValueHandler<Long, String> recorder = new ValueHandler<Long, String>() {
+        @Override
+        public void onValue(Long key, String value, boolean endOfBatch) {
+            handled.add(value);
+            if (endOfBatch) {
+                ends.add(value);
+            }
+        }
+    };
+
+    @Test
+    public void shouldDrainEveryBufferIntoTheHandlerBeforeShuttingDown() throws InterruptedException {
+        CoalescingRingBuffer<Long, String> prices = new CoalescingRingBuffer<Long, String>(8);
+        CoalescingRingBuffer<Long, String> trades = new CoalescingRingBuffer<Long, String>(8);
+        prices.offer(1L, "price 1");
+        prices.offer(2L, "price 2");
+        trades.offer(1L, "trade 1");
+
+        CoalescingDispatcher<Long, String> dispatcher = new CoalescingDispatcher<Long, String>(recorder, new BusySpinWaitStrategy(), asList(prices, trades));
+        dispatcher.start(THREADS);
+        dispatcher.shutdown();
+
+        assertTrue(dispatcher.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(asList("price 1", "price 2", "trade 1"), handled);
+        assertEquals(asList("trade 1"), ends);
+    }
+
+    @Test
+    public void shouldHandleValuesOfferedWhileRunning() throws InterruptedException {
+        BlockingWaitStrategy waitStrategy = new BlockingWaitStrategy();
+        CoalescingRingBuffer<Long, String> buffer = new CoalescingRingBuffer<Long, String>(8, waitStrategy);
+        CoalescingDispatcher<Long, String> dispatcher = new CoalescingDispatcher<Long, String>(recorder, waitStrategy, buffer);
+        dispatcher.start(THREADS);
+
+        buffer.offer(1L, "1");
+        waitUntilHandled(1);
+        buffer.offer(2L, "2");
+        waitUntilHandled(2);
+
+        dispatcher.halt();
+        assertTrue(dispatcher.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(asList("1", "2"), handled);
+    }
+
+    @Test
+    public void shouldLeaveValuesInTheBuffersWhenHalted() throws InterruptedException {
+        final CountDownLatch handling = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CoalescingRingBuffer<Long, String> buffer = new CoalescingRingBuffer<Long, String>(8);
+        buffer.offer(1L, "1");
+
+        CoalescingDispatcher<Long, String> dispatcher = new CoalescingDispatcher<Long, String>(new ValueHandler<Long, String>() {
+            @Override
+            public void onValue(Long key, String value, boolean endOfBatch) {
+                handled.add(value);
+                handling.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        }, new BusySpinWaitStrategy(), buffer);
+        dispatcher.start(THREADS);
+
+        assertTrue(handling.await(5, TimeUnit.SECONDS));
+        buffer.offer(2L, "2");
+        dispatcher.halt();
+        release.countDown();
+
+        assertTrue(dispatcher.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(asList("1"), handled);
+        assertFalse(buffer.isEmpty());
+    }
+
+    @Test
+    public void shouldRunOnAnExecutorAndStopWhenItShutsDown() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CoalescingRingBuffer<Long, String> buffer = new CoalescingRingBuffer<Long, String>(8);
+        CoalescingDispatcher<Long, String> dispatcher = new CoalescingDispatcher<Long, String>(recorder, new BackoffWaitStrategy(), buffer);
+        dispatcher.startOn(executor);
+
+        buffer.offer(1L, "1");
+        waitUntilHandled(1);
+
+        executor.shutdownNow();
+        assertTrue(dispatcher.awaitTermination(5, TimeUnit.SECONDS));
+        assertFalse(dispatcher.isRunning());
+    }
+
+    @Test
+    public void shouldStopAnIdleLoopWithoutInterruptingItsThread() throws InterruptedException {
+        final boolean[] interruptedAfterRun = new boolean[1];
+        CoalescingDispatcher<Long, String> dispatcher =
+                new CoalescingDispatcher<Long, String>(recorder, new BlockingWaitStrategy(), new CoalescingRingBuffer<Long, String>(8));
+
+        Thread thread = dispatcher.start(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable loop) {
+                return THREADS.newThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        loop.run();
+                        interruptedAfterRun[0] = Thread.currentThread().isInterrupted(); // what a pool thread would be left with
+                    }
+                });
+            }
+        });
+
+        while (thread.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(1); // parked on the strategy's condition
+        }
+
+        dispatcher.shutdown();
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+        assertFalse(interruptedAfterRun[0]);
+    }
+
+    @Test
+    public void shouldTerminateWhenStoppedBeforeItStarts() throws InterruptedException {
+        CoalescingDispatcher<Long, String> dispatcher =
+                new CoalescingDispatcher<Long, String>(recorder, new BusySpinWaitStrategy(), new CoalescingRingBuffer<Long, String>(8));
+        dispatcher.halt();
+
+        assertTrue(dispatcher.isTerminated());
+        assertTrue(dispatcher.awaitTermination(0, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldOnlyStartOnce() {
+        CoalescingDispatcher<Long, String> dispatcher =
+                new CoalescingDispatcher<Long, String>(recorder, new BusySpinWaitStrategy(), new CoalescingRingBuffer<Long, String>(8));
+        dispatcher.start(THREADS);
+
+        try {
+            dispatcher.start(THREADS);
+        } finally {
+            dispatcher.halt();
+        }
+    }
+
+    private void waitUntilHandled(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        while (handled.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+
+        assertEquals(count, handled.size());
+    }
+
+}
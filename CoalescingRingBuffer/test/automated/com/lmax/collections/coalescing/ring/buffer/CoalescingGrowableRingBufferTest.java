@@ -0,0 +1,148 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CoalescingGrowableRingBufferTest extends FunctionalTest {
+
+    @Override
+    public CoalescingBuffer<Long, MarketSnapshot> createBuffer(int capacity) {
+        return new CoalescingGrowableRingBuffer<Long, MarketSnapshot>(1, capacity);
+    }
+
+    @Test
+    public void shouldGrowWhenFullUntilTheMaximumCapacity() {
+        CoalescingGrowableRingBuffer<Long, String> buffer = new CoalescingGrowableRingBuffer<Long, String>(2, 8);
+
+        for (long key = 0; key < 8; key++) {
+            assertTrue(buffer.offer(key, "value"));
+        }
+
+        assertEquals(8, buffer.capacity());
+        assertTrue(buffer.isFull());
+        assertFalse(buffer.offer(8L, "value"));
+    }
+
+    @Test
+    public void shouldReadAcrossResizesInOrder() {
+        CoalescingGrowableRingBuffer<Long, String> buffer = new CoalescingGrowableRingBuffer<Long, String>(2, 64);
+        List<String> bucket = new ArrayList<String>();
+        List<String> expected = new ArrayList<String>();
+
+        for (long key = 0; key < 40; key++) {
+            buffer.offer(key, Long.toString(key));
+            expected.add(Long.toString(key));
+
+            if (key % 7 == 0) {
+                buffer.poll(bucket, 3);
+            }
+        }
+        buffer.poll(bucket);
+
+        assertEquals(expected, bucket);
+    }
+
+    @Test
+    public void shouldLetGoOfTheRingItGrewOutOfOnceItHasBeenRead() throws InterruptedException {
+        CoalescingGrowableRingBuffer<Long, Object> buffer = new CoalescingGrowableRingBuffer<Long, Object>(2, 8);
+        Object value = new Object();
+        WeakReference<Object> reference = new WeakReference<Object>(value);
+
+        buffer.offer(1L, value);
+        buffer.offer(2L, "2");
+        buffer.offer(3L, "3"); // grows, so 3 is the first value in the new ring
+        value = null;
+
+        buffer.poll(new ArrayList<Object>(), 2); // reads the old ring to its end but nothing from the new one
+        buffer.offer(4L, "4"); // drops the old ring without cleaning it
+
+        for (int i = 0; i < 10 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+
+        assertNull(reference.get());
+    }
+
+    @Test
+    public void shouldCoalesceAValueLeftInTheRingItGrewOutOf() {
+        CoalescingGrowableRingBuffer<Long, String> buffer = new CoalescingGrowableRingBuffer<Long, String>(2, 8);
+
+        buffer.offer(1L, "1");
+        buffer.offer(2L, "2");
+        buffer.offer(3L, "3");
+        buffer.offer(1L, "1'");
+
+        List<String> bucket = new ArrayList<String>();
+        assertEquals(3, buffer.poll(bucket));
+        assertEquals(asList("1'", "2", "3"), bucket);
+    }
+
+    @Test
+    public void shouldHandTheEndOfBatchToTheLastValueAcrossRings() {
+        CoalescingGrowableRingBuffer<Long, String> buffer = new CoalescingGrowableRingBuffer<Long, String>(2, 8);
+        final List<String> values = new ArrayList<String>();
+        final List<String> ends = new ArrayList<String>();
+
+        buffer.offer(1L, "1");
+        buffer.offer(2L, "2");
+        buffer.offer(3L, "3");
+
+        buffer.poll(new ValueHandler<Long, String>() {
+            @Override
+            public void onValue(Long key, String value, boolean endOfBatch) {
+                values.add(value);
+                if (endOfBatch) {
+                    ends.add(value);
+                }
+            }
+        });
+
+        assertEquals(asList("1", "2", "3"), values);
+        assertEquals(asList("3"), ends);
+    }
+
+    @Test
+    public void shouldShrinkBackOnceTheConsumerKeepsUp() {
+        CoalescingGrowableRingBuffer<Long, String> buffer = new CoalescingGrowableRingBuffer<Long, String>(2, 64);
+        List<String> bucket = new ArrayList<String>();
+
+        for (long key = 0; key < 64; key++) {
+            buffer.offer(key, "value");
+        }
+        assertEquals(64, buffer.capacity());
+        buffer.poll(bucket);
+
+        for (long key = 0; key < 1000; key++) {
+            buffer.offer(key, "value");
+            buffer.poll(bucket);
+        }
+
+        assertEquals(2, buffer.capacity());
+        assertEquals(1064, bucket.size());
+    }
+
+}
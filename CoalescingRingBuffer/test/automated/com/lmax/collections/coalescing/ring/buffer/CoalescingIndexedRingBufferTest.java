@@ -0,0 +1,98 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CoalescingIndexedRingBufferTest extends FunctionalTest {
+
+    private static class CollidingKey {
+        private final int id;
+
+        private CollidingKey(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            return object instanceof CollidingKey && ((CollidingKey) object).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+    }
+
+    @Override
+    public CoalescingBuffer<Long, MarketSnapshot> createBuffer(int capacity) {
+        return new CoalescingIndexedRingBuffer<Long, MarketSnapshot>(capacity);
+    }
+
+    @Test
+    public void shouldKeepCoalescingAfterTheRingHasWrappedManyTimes() {
+        CoalescingIndexedRingBuffer<Long, String> buffer = new CoalescingIndexedRingBuffer<Long, String>(4);
+        List<String> bucket = new ArrayList<String>();
+
+        for (long round = 0; round < 1000; round++) {
+            assertTrue(buffer.offer(round % 7, "a" + round));
+            assertTrue(buffer.offer((round + 1) % 7, "b" + round));
+            assertTrue(buffer.offer(round % 7, "c" + round));
+
+            buffer.poll(bucket);
+            assertEquals(asList("c" + round, "b" + round), bucket);
+            bucket.clear();
+        }
+    }
+
+    @Test
+    public void shouldFindKeysWhoseHashesCollideAfterOthersHaveBeenCleaned() {
+        CoalescingIndexedRingBuffer<CollidingKey, String> buffer = new CoalescingIndexedRingBuffer<CollidingKey, String>(4);
+        List<String> bucket = new ArrayList<String>();
+
+        buffer.offer(new CollidingKey(1), "1");
+        buffer.offer(new CollidingKey(2), "2");
+        buffer.offer(new CollidingKey(3), "3");
+        buffer.poll(bucket);
+        bucket.clear();
+
+        buffer.offer(new CollidingKey(4), "4"); // cleans 1, 2 and 3 out of the index
+        buffer.offer(new CollidingKey(5), "5");
+        buffer.offer(new CollidingKey(4), "4'");
+        buffer.offer(new CollidingKey(5), "5'");
+
+        buffer.poll(bucket);
+        assertEquals(asList("4'", "5'"), bucket);
+    }
+
+    @Test
+    public void shouldOnlyRejectNewKeysWhenFull() {
+        CoalescingIndexedRingBuffer<Long, String> buffer = new CoalescingIndexedRingBuffer<Long, String>(2);
+
+        assertTrue(buffer.offer(1L, "1"));
+        assertTrue(buffer.offer(2L, "2"));
+        assertTrue(buffer.offer(1L, "1'"));
+        assertFalse(buffer.offer(3L, "3"));
+    }
+
+}
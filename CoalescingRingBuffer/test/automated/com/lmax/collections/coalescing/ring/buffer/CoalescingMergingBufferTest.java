@@ -0,0 +1,148 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CoalescingMergingBufferTest extends FunctionalTest {
+
+    private static final BiFunction<Long, Long, Long> SUM = new BiFunction<Long, Long, Long>() {
+        @Override
+        public Long apply(Long pending, Long delta) {
+            return pending + delta;
+        }
+    };
+
+    @Override
+    public CoalescingBuffer<Long, MarketSnapshot> createBuffer(int capacity) {
+        return new CoalescingMergingBuffer<Long, MarketSnapshot>(capacity);
+    }
+
+    @Test
+    public void shouldMergeDeltasForAKeyThatHasNotBeenRead() {
+        CoalescingMergingBuffer<String, Long> volumes = new CoalescingMergingBuffer<String, Long>(8);
+        List<Long> bucket = new ArrayList<Long>();
+
+        volumes.offer("VOD", 1L, SUM);
+        volumes.offer("BP", 10L, SUM);
+        volumes.offer("VOD", 2L, SUM);
+        volumes.offer("VOD", 3L, SUM);
+
+        volumes.poll(bucket);
+        assertEquals(asList(6L, 10L), bucket);
+    }
+
+    @Test
+    public void shouldStartAfreshOnceThePendingValueHasBeenRead() {
+        CoalescingMergingBuffer<String, Long> volumes = new CoalescingMergingBuffer<String, Long>(8);
+        List<Long> bucket = new ArrayList<Long>();
+
+        volumes.offer("VOD", 1L, SUM);
+        volumes.poll(bucket);
+        volumes.offer("VOD", 2L, SUM);
+        volumes.offer("VOD", 3L, SUM);
+        volumes.poll(bucket);
+
+        assertEquals(asList(1L, 5L), bucket);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void shouldRefuseANullValue() {
+        new CoalescingMergingBuffer<String, Long>(8).offer("VOD", null, SUM);
+    }
+
+    @Test
+    public void shouldRefuseAMergeThatComesToNullAndKeepThePendingValue() {
+        CoalescingMergingBuffer<String, Long> volumes = new CoalescingMergingBuffer<String, Long>(8);
+        List<Long> bucket = new ArrayList<Long>();
+
+        volumes.offer("VOD", 1L, SUM);
+
+        try {
+            volumes.offer("VOD", 2L, new BiFunction<Long, Long, Long>() {
+                @Override
+                public Long apply(Long pending, Long delta) {
+                    return null;
+                }
+            });
+            fail("merged to null");
+        } catch (NullPointerException expected) {
+        }
+
+        volumes.poll(bucket);
+        assertEquals(asList(1L), bucket);
+    }
+
+    @Test
+    public void shouldOnlyRejectNewKeysWhenFull() {
+        CoalescingMergingBuffer<String, Long> volumes = new CoalescingMergingBuffer<String, Long>(2);
+
+        assertTrue(volumes.offer("VOD", 1L, SUM));
+        assertTrue(volumes.offer("BP", 1L, SUM));
+        assertTrue(volumes.offer("VOD", 1L, SUM));
+        assertFalse(volumes.offer("RBS", 1L, SUM));
+    }
+
+    @Test
+    public void shouldCountEveryDeltaExactlyOnceWhileTheConsumerRacesTheProducer() throws InterruptedException {
+        final CoalescingMergingBuffer<Long, Long> volumes = new CoalescingMergingBuffer<Long, Long>(16);
+        final long deltasPerKey = 200000;
+        final int numberOfKeys = 8;
+
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                for (long i = 0; i < deltasPerKey; i++) {
+                    for (long key = 0; key < numberOfKeys; key++) {
+                        while (!volumes.offer(key, 1L, SUM)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            }
+        };
+
+        final long[] totals = new long[numberOfKeys];
+        ValueHandler<Long, Long> consumer = new ValueHandler<Long, Long>() {
+            @Override
+            public void onValue(Long key, Long delta, boolean endOfBatch) {
+                totals[key.intValue()] += delta;
+            }
+        };
+
+        producer.start();
+
+        while (producer.isAlive()) {
+            volumes.poll(consumer);
+        }
+
+        volumes.poll(consumer);
+
+        for (long total : totals) {
+            assertEquals(deltasPerKey, total);
+        }
+    }
+
+}
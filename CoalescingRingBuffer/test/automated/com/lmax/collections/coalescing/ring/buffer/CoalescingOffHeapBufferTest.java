@@ -0,0 +1,146 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.lmax.collections.coalescing.ring.buffer.MarketSnapshot.createMarketSnapshot;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CoalescingOffHeapBufferTest {
+
+    private static class RecordingHandler implements RecordHandler {
+        private final MarketSnapshotRecord record = new MarketSnapshotRecord();
+        private final List<String> records = new ArrayList<String>();
+        private final List<Boolean> endsOfBatch = new ArrayList<Boolean>();
+
+        @Override
+        public void onRecord(long key, ByteBuffer buffer, int offset, boolean endOfBatch) {
+            records.add(key + "=" + record.wrap(buffer, offset));
+            endsOfBatch.add(endOfBatch);
+        }
+    }
+
+    private final CoalescingOffHeapBuffer<MarketSnapshot> buffer = new CoalescingOffHeapBuffer<MarketSnapshot>(4, new MarketSnapshotRecord());
+    private final RecordingHandler handler = new RecordingHandler();
+
+    @Test
+    public void shouldHandOutRecordsInTheOrderTheirKeysWereFirstOffered() {
+        buffer.offer(1, createMarketSnapshot(1, 10, 11));
+        buffer.offer(2, createMarketSnapshot(2, 20, 21));
+
+        assertEquals(2, buffer.poll(handler));
+        assertEquals(asList("1=1: 10/11", "2=2: 20/21"), handler.records);
+        assertEquals(asList(false, true), handler.endsOfBatch);
+    }
+
+    @Test
+    public void shouldOverwriteTheRecordOfAKeyThatHasNotBeenRead() {
+        buffer.offer(1, createMarketSnapshot(1, 10, 11));
+        buffer.offer(2, createMarketSnapshot(2, 20, 21));
+        buffer.offer(1, createMarketSnapshot(1, 12, 13));
+
+        assertEquals(2, buffer.size());
+        buffer.poll(handler);
+        assertEquals(asList("1=1: 12/13", "2=2: 20/21"), handler.records);
+    }
+
+    @Test
+    public void shouldAppendAKeyAgainOnceItHasBeenRead() {
+        buffer.offer(1, createMarketSnapshot(1, 10, 11));
+        buffer.poll(handler);
+        buffer.offer(1, createMarketSnapshot(1, 12, 13));
+
+        assertEquals(1, buffer.poll(handler));
+        assertEquals(asList("1=1: 10/11", "1=1: 12/13"), handler.records);
+    }
+
+    @Test
+    public void shouldRejectNewKeysWhenFull() {
+        for (long key = 0; key < 4; key++) {
+            assertTrue(buffer.offer(key, createMarketSnapshot(key, key, key)));
+        }
+
+        assertTrue(buffer.isFull());
+        assertFalse(buffer.offer(4, createMarketSnapshot(4, 4, 4)));
+        assertTrue(buffer.offer(3, createMarketSnapshot(3, 30, 31)));
+    }
+
+    @Test
+    public void shouldPollNoMoreThanMaxElements() {
+        buffer.offer(1, createMarketSnapshot(1, 10, 11));
+        buffer.offer(2, createMarketSnapshot(2, 20, 21));
+        buffer.offer(3, createMarketSnapshot(3, 30, 31));
+
+        assertEquals(2, buffer.poll(handler, 2));
+        assertEquals(asList(false, true), handler.endsOfBatch);
+        assertEquals(1, buffer.size());
+    }
+
+    @Test
+    public void shouldNeverHandOutATornRecord() throws InterruptedException {
+        final CoalescingOffHeapBuffer<MarketSnapshot> buffer = new CoalescingOffHeapBuffer<MarketSnapshot>(16, new MarketSnapshotRecord());
+        final long updates = 2000000;
+        final long[] lastBids = new long[8];
+
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                MarketSnapshot snapshot = createMarketSnapshot(0, 0, 0); // reused, the buffer keeps no reference to it
+
+                for (long bid = 1; bid <= updates; bid++) {
+                    long key = bid % lastBids.length;
+                    snapshot.setInstrumentId(key);
+                    snapshot.setBestBid(bid);
+                    snapshot.setBestAsk(-bid);
+
+                    while (!buffer.offer(key, snapshot)) {
+                        Thread.yield();
+                    }
+                }
+            }
+        };
+
+        final MarketSnapshotRecord record = new MarketSnapshotRecord();
+        RecordHandler checker = new RecordHandler() {
+            @Override
+            public void onRecord(long key, ByteBuffer values, int offset, boolean endOfBatch) {
+                record.wrap(values, offset);
+                assertEquals(key, record.getInstrumentId());
+                assertEquals(-record.getBid(), record.getAsk());
+                assertTrue(record.getBid() >= lastBids[(int) key]);
+                lastBids[(int) key] = record.getBid();
+            }
+        };
+
+        producer.start();
+
+        while (producer.isAlive() || !buffer.isEmpty()) {
+            buffer.poll(checker);
+        }
+
+        for (int key = 0; key < lastBids.length; key++) {
+            assertEquals(updates - ((updates - key) % lastBids.length), lastBids[key]);
+        }
+    }
+
+}
@@ -0,0 +1,47 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CoalescingPaddedRingBufferTest extends FunctionalTest {
+
+    @Override
+    public CoalescingBuffer<Long, MarketSnapshot> createBuffer(int capacity) {
+        return new CoalescingPaddedRingBuffer<Long, MarketSnapshot>(capacity);
+    }
+
+    @Test
+    public void shouldSeeSpaceFreedByTheConsumerOnceItLooksFull() {
+        CoalescingPaddedRingBuffer<Long, String> buffer = new CoalescingPaddedRingBuffer<Long, String>(2);
+        List<String> bucket = new ArrayList<String>();
+
+        for (long key = 0; key < 100; key += 2) {
+            assertTrue(buffer.offer(key, "a"));
+            assertTrue(buffer.offer(key + 1, "b"));
+            assertFalse(buffer.offer(key + 2, "c"));
+
+            assertEquals(2, buffer.poll(bucket));
+        }
+    }
+
+}
@@ -0,0 +1,288 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CoalescingPublisherTest {
+
+    private static final Executor CALLER_RUNS = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final CoalescingPublisher<Long, String> publisher =
+            new CoalescingPublisher<Long, String>(new CoalescingRingBuffer<Long, String>(16), CALLER_RUNS);
+    private final RecordingSubscriber subscriber = new RecordingSubscriber();
+
+    @Test
+    public void shouldDeliverNothingUntilRequested() {
+        publisher.subscribe(subscriber);
+        publisher.offer(1L, "1");
+
+        assertEquals(0, subscriber.values.size());
+
+        subscriber.request(1);
+        assertEquals(asList("1"), subscriber.values);
+    }
+
+    @Test
+    public void shouldKeepCoalescingWhileThereIsNoDemand() {
+        publisher.subscribe(subscriber);
+        subscriber.request(1);
+
+        publisher.offer(1L, "1");
+        publisher.offer(2L, "2");
+        publisher.offer(1L, "1'");
+        publisher.offer(2L, "2'");
+        publisher.offer(2L, "2''");
+
+        subscriber.request(5);
+        assertEquals(asList("1", "2''", "1'"), subscriber.values);
+    }
+
+    @Test
+    public void shouldTakeNoMoreThanWasRequested() {
+        publisher.subscribe(subscriber);
+        publisher.offer(1L, "1");
+        publisher.offer(2L, "2");
+        publisher.offer(3L, "3");
+
+        subscriber.request(2);
+        assertEquals(asList("1", "2"), subscriber.values);
+
+        publisher.offer(3L, "3'");
+        subscriber.request(Long.MAX_VALUE);
+        assertEquals(asList("1", "2", "3'"), subscriber.values);
+    }
+
+    @Test
+    public void shouldCompleteOnceEverythingHasBeenDelivered() {
+        publisher.subscribe(subscriber);
+        publisher.offer(1L, "1");
+        publisher.close();
+
+        assertFalse(subscriber.completed);
+        subscriber.request(1);
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void shouldFailStraightAwayWhenClosedExceptionally() {
+        publisher.subscribe(subscriber);
+        publisher.offer(1L, "1");
+
+        IllegalStateException error = new IllegalStateException("upstream failed");
+        publisher.closeExceptionally(error);
+
+        assertSame(error, subscriber.error);
+        assertEquals(0, subscriber.values.size());
+    }
+
+    @Test
+    public void shouldFailANonPositiveRequest() {
+        publisher.subscribe(subscriber);
+        subscriber.request(0);
+
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void shouldRejectASecondSubscriber() {
+        RecordingSubscriber second = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        publisher.subscribe(second);
+
+        assertNull(subscriber.error);
+        assertTrue(second.error instanceof IllegalStateException);
+    }
+
+    @Test
+    public void shouldIgnoreRequestsFromTheRejectedSubscriber() {
+        RecordingSubscriber second = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        publisher.subscribe(second);
+
+        second.request(0);
+        assertTrue(publisher.offer(1L, "1"));
+        subscriber.request(1);
+
+        assertNull(subscriber.error);
+        assertEquals(asList("1"), subscriber.values);
+        assertTrue(second.values.isEmpty());
+    }
+
+    @Test
+    public void shouldCallOnSubscribeFromTheDrain() {
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        CoalescingPublisher<Long, String> publisher = new CoalescingPublisher<Long, String>(new CoalescingRingBuffer<Long, String>(16), new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        });
+
+        publisher.subscribe(subscriber);
+        assertNull(subscriber.subscription);
+
+        tasks.remove(0).run();
+        assertNotNull(subscriber.subscription);
+    }
+
+    @Test
+    public void shouldStopDeliveringOnceCancelled() {
+        publisher.subscribe(subscriber);
+        subscriber.request(Long.MAX_VALUE);
+        publisher.offer(1L, "1");
+
+        subscriber.subscription.cancel();
+        publisher.offer(2L, "2");
+
+        assertEquals(asList("1"), subscriber.values);
+    }
+
+    @Test
+    public void shouldCoalesceWhatTheProcessorIsSentByKey() {
+        CoalescingProcessor<Long, String> processor = new CoalescingProcessor<Long, String>(
+                new CoalescingRingBuffer<Long, String>(16), CALLER_RUNS, new Function<String, Long>() {
+            @Override
+            public Long apply(String value) {
+                return Long.valueOf(value.substring(0, 1));
+            }
+        });
+        processor.subscribe(subscriber);
+        processor.onSubscribe(new UnboundedSubscription());
+
+        processor.onNext("1a");
+        processor.onNext("2a");
+        processor.onNext("1b");
+        processor.onComplete();
+
+        subscriber.request(Long.MAX_VALUE);
+        assertEquals(asList("1b", "2a"), subscriber.values);
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void shouldDeliverTheLastValuesToASlowSubscriberOnAnotherThread() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CoalescingPublisher<Long, String> publisher =
+                new CoalescingPublisher<Long, String>(new CoalescingRingBuffer<Long, String>(16), executor);
+        final String[] lastValues = new String[10];
+        final CountDownLatch completed = new CountDownLatch(1);
+
+        publisher.subscribe(new Flow.Subscriber<String>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(String item) {
+                String[] keyAndValue = item.split(":");
+                lastValues[Integer.parseInt(keyAndValue[0])] = keyAndValue[1];
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+                completed.countDown();
+            }
+        });
+
+        for (int i = 0; i < 100000; i++) {
+            long key = i % 10;
+            while (!publisher.offer(key, key + ":" + i)) {
+                Thread.yield();
+            }
+        }
+        publisher.close();
+
+        assertTrue(completed.await(10, TimeUnit.SECONDS));
+        for (int key = 0; key < 10; key++) {
+            assertEquals(Integer.toString(99990 + key), lastValues[key]);
+        }
+        executor.shutdown();
+    }
+
+    private static final class RecordingSubscriber implements Flow.Subscriber<String> {
+        private final List<String> values = new ArrayList<String>();
+        private Flow.Subscription subscription;
+        private Throwable error;
+        private boolean completed;
+
+        void request(long n) {
+            subscription.request(n);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(String item) {
+            values.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    private static final class UnboundedSubscription implements Flow.Subscription {
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    }
+
+}
@@ -0,0 +1,223 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CoalescingRingBufferOverflowTest {
+
+    private static CoalescingRingBuffer<Long, String> createBuffer(int capacity, OverflowPolicy policy) {
+        return new CoalescingRingBuffer<Long, String>(capacity, new BusySpinWaitStrategy(), policy);
+    }
+
+    @Test
+    public void shouldRejectByDefault() {
+        CoalescingRingBuffer<Long, String> buffer = new CoalescingRingBuffer<Long, String>(2);
+
+        buffer.offer(1L, "1");
+        buffer.offer(2L, "2");
+
+        assertFalse(buffer.offer(3L, "3"));
+        assertEquals(1, buffer.overflows());
+        assertEquals(1, buffer.rejections());
+    }
+
+    @Test
+    public void shouldStillCoalesceWhenFull() {
+        for (OverflowPolicy policy : OverflowPolicy.values()) {
+            CoalescingRingBuffer<Long, String> buffer = createBuffer(2, policy);
+
+            buffer.offer(1L, "1");
+            buffer.offer(2L, "2");
+
+            assertTrue(policy.toString(), buffer.offer(1L, "1'"));
+            assertEquals(policy.toString(), 0, buffer.overflows());
+        }
+    }
+
+    @Test
+    public void shouldBlockUntilTheConsumerFreesASlot() throws InterruptedException {
+        final CoalescingRingBuffer<Long, String> buffer = createBuffer(2, OverflowPolicy.BLOCK);
+        final CountDownLatch offered = new CountDownLatch(1);
+
+        buffer.offer(1L, "1");
+        buffer.offer(2L, "2");
+
+        Thread producer = new Thread("producer") {
+            @Override
+            public void run() {
+                buffer.offer(3L, "3");
+                offered.countDown();
+            }
+        };
+        producer.start();
+
+        assertFalse(offered.await(50, TimeUnit.MILLISECONDS));
+
+        List<String> bucket = new ArrayList<String>();
+        buffer.poll(bucket, 1);
+        assertTrue(offered.await(5, TimeUnit.SECONDS));
+        producer.join();
+
+        buffer.poll(bucket);
+        assertEquals(asList("1", "2", "3"), bucket);
+        assertEquals(1, buffer.overflows());
+        assertEquals(0, buffer.rejections());
+    }
+
+    @Test
+    public void shouldRejectABlockedOfferWhenInterrupted() {
+        CoalescingRingBuffer<Long, String> buffer = createBuffer(2, OverflowPolicy.BLOCK);
+        buffer.offer(1L, "1");
+        buffer.offer(2L, "2");
+
+        Thread.currentThread().interrupt();
+        try {
+            assertFalse(buffer.offer(3L, "3"));
+            assertEquals(1, buffer.rejections());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void shouldEvictTheOldestUnreadValue() {
+        CoalescingRingBuffer<Long, String> buffer = createBuffer(2, OverflowPolicy.EVICT_OLDEST);
+
+        buffer.offer(1L, "1");
+        buffer.offer(2L, "2");
+        assertTrue(buffer.offer(3L, "3"));
+        assertTrue(buffer.offer(4L, "4"));
+
+        List<String> bucket = new ArrayList<String>();
+        assertEquals(2, buffer.poll(bucket));
+        assertEquals(asList("3", "4"), bucket);
+        assertEquals(2, buffer.overflows());
+        assertEquals(2, buffer.evictions());
+        assertEquals(0, buffer.rejections());
+    }
+
+    @Test
+    public void shouldNotCoalesceIntoAnEvictedSlot() {
+        CoalescingRingBuffer<Long, String> buffer = createBuffer(2, OverflowPolicy.EVICT_OLDEST);
+
+        buffer.offer(1L, "1");
+        buffer.offer(2L, "2");
+        buffer.offer(3L, "3");
+        buffer.offer(1L, "1'");
+
+        List<String> bucket = new ArrayList<String>();
+        buffer.poll(bucket);
+        assertEquals(asList("3", "1'"), bucket);
+    }
+
+    @Test
+    public void shouldKeepEvictingWhileTheConsumerReadsPartOfTheBuffer() {
+        CoalescingRingBuffer<Long, String> buffer = createBuffer(4, OverflowPolicy.EVICT_OLDEST);
+        List<String> bucket = new ArrayList<String>();
+
+        for (long key = 0; key < 4; key++) {
+            buffer.offer(key, Long.toString(key));
+        }
+        buffer.poll(bucket, 1);
+        buffer.offer(4L, "4");
+        buffer.offer(5L, "5");
+        buffer.poll(bucket);
+
+        assertEquals(asList("0", "2", "3", "4", "5"), bucket);
+        assertEquals(1, buffer.evictions());
+    }
+
+    @Test
+    public void shouldDeliverSpilledValuesAfterTheMainRing() {
+        CoalescingRingBuffer<Long, String> buffer = createBuffer(2, OverflowPolicy.SPILL);
+
+        buffer.offer(1L, "1");
+        buffer.offer(2L, "2");
+        assertTrue(buffer.offer(3L, "3"));
+        assertTrue(buffer.offer(4L, "4"));
+        assertTrue(buffer.offer(3L, "3'"));
+
+        assertFalse(buffer.isEmpty());
+        List<String> bucket = new ArrayList<String>();
+        assertEquals(4, buffer.poll(bucket));
+        assertEquals(asList("1", "2", "3'", "4"), bucket);
+        assertTrue(buffer.isEmpty());
+        assertEquals(3, buffer.spills()); // the update of 3 coalesced in the overflow ring
+        assertEquals(5, buffer.offers());
+        assertEquals(buffer.offers(), buffer.coalescedUpdates() + buffer.appends() + buffer.rejections() + buffer.spills());
+    }
+
+    @Test
+    public void shouldKeepSpillingUntilTheOverflowHasBeenDrained() {
+        CoalescingRingBuffer<Long, String> buffer = createBuffer(2, OverflowPolicy.SPILL);
+        List<String> bucket = new ArrayList<String>();
+
+        buffer.offer(1L, "1");
+        buffer.offer(2L, "2");
+        buffer.offer(3L, "3");
+        buffer.poll(bucket, 1);
+        buffer.offer(4L, "4"); // must not overtake 3 even though the main ring has room again
+
+        buffer.poll(bucket);
+        assertEquals(asList("1", "2", "3", "4"), bucket);
+        assertEquals(1, buffer.overflows());
+        assertEquals(2, buffer.spills());
+    }
+
+    @Test
+    public void shouldRejectWhenTheOverflowIsFullToo() {
+        CoalescingRingBuffer<Long, String> buffer = new CoalescingRingBuffer<Long, String>(2, new BusySpinWaitStrategy(), OverflowPolicy.SPILL, 1);
+
+        buffer.offer(1L, "1");
+        buffer.offer(2L, "2");
+        assertTrue(buffer.offer(3L, "3"));
+        assertFalse(buffer.offer(4L, "4"));
+
+        assertEquals(1, buffer.spills());
+        assertEquals(1, buffer.rejections());
+    }
+
+    @Test
+    public void shouldEndTheBatchOnTheLastSpilledValue() {
+        CoalescingRingBuffer<Long, String> buffer = createBuffer(2, OverflowPolicy.SPILL);
+        final List<String> ends = new ArrayList<String>();
+
+        buffer.offer(1L, "1");
+        buffer.offer(2L, "2");
+        buffer.offer(3L, "3");
+
+        assertEquals(3, buffer.poll(new ValueHandler<Long, String>() {
+            @Override
+            public void onValue(Long key, String value, boolean endOfBatch) {
+                if (endOfBatch) {
+                    ends.add(value);
+                }
+            }
+        }));
+        assertEquals(asList("3"), ends);
+    }
+
+}
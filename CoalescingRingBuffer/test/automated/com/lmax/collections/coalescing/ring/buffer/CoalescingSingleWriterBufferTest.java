@@ -0,0 +1,177 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CoalescingSingleWriterBufferTest extends FunctionalTest {
+
+    @Override
+    public CoalescingBuffer<Long, MarketSnapshot> createBuffer(int capacity) {
+        return new CoalescingSingleWriterBuffer<Long, MarketSnapshot>(capacity);
+    }
+
+    private static List<String> drain(CoalescingSingleWriterBuffer<String, String> buffer) {
+        List<String> bucket = new ArrayList<String>();
+        buffer.poll(bucket);
+        return bucket;
+    }
+
+    @Test
+    public void shouldNeverCollapseNonCollapsibleValues() {
+        CoalescingSingleWriterBuffer<String, String> buffer = new CoalescingSingleWriterBuffer<String, String>(8);
+
+        buffer.offer("VOD", "price 1");
+        buffer.offerNonCollapsible("halt");
+        buffer.offerNonCollapsible("halt");
+        buffer.offer("VOD", "price 2");
+
+        assertEquals(asList("price 2", "halt", "halt"), drain(buffer));
+    }
+
+    @Test
+    public void shouldRejectNonCollapsibleValuesWhenFull() {
+        CoalescingSingleWriterBuffer<String, String> buffer = new CoalescingSingleWriterBuffer<String, String>(2);
+
+        assertTrue(buffer.offerNonCollapsible("open"));
+        assertTrue(buffer.offerNonCollapsible("halt"));
+        assertFalse(buffer.offerNonCollapsible("close"));
+    }
+
+    @Test
+    public void shouldHandNonCollapsibleValuesToAHandlerWithANullKey() {
+        CoalescingSingleWriterBuffer<String, String> buffer = new CoalescingSingleWriterBuffer<String, String>(8);
+        final List<String> keys = new ArrayList<String>();
+
+        buffer.offerNonCollapsible("halt");
+        buffer.poll(new ValueHandler<String, String>() {
+            @Override
+            public void onValue(String key, String value, boolean endOfBatch) {
+                keys.add(key);
+            }
+        });
+
+        assertEquals(1, keys.size());
+        assertNull(keys.get(0));
+    }
+
+    @Test
+    public void shouldMoveTheLatestValueToTheTail() {
+        CoalescingSingleWriterBuffer<String, String> buffer = new CoalescingSingleWriterBuffer<String, String>(8, ConflationPolicy.LATEST_MOVED_TO_TAIL);
+
+        buffer.offer("VOD", "VOD 1");
+        buffer.offer("BP", "BP 1");
+        buffer.offerNonCollapsible("halt");
+        buffer.offer("VOD", "VOD 2");
+        buffer.offer("VOD", "VOD 3");
+
+        assertEquals(asList("BP 1", "halt", "VOD 3"), drain(buffer));
+    }
+
+    @Test
+    public void shouldNotCountValuesMovedToTheTailTowardsABoundedPoll() {
+        CoalescingSingleWriterBuffer<String, String> buffer = new CoalescingSingleWriterBuffer<String, String>(8, ConflationPolicy.LATEST_MOVED_TO_TAIL);
+
+        buffer.offer("VOD", "VOD 1");
+        buffer.offer("BP", "BP 1");
+        buffer.offer("VOD", "VOD 2");
+        buffer.offer("BP", "BP 2");
+
+        List<String> bucket = new ArrayList<String>();
+        assertEquals(1, buffer.poll(bucket, 1));
+        assertEquals(asList("VOD 2"), bucket);
+
+        String[] values = new String[4];
+        assertEquals(1, buffer.poll(values, 0, 1));
+        assertEquals("BP 2", values[0]);
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void shouldOnlyDrainWhatWasThereWhenThePollStarted() {
+        final CoalescingSingleWriterBuffer<String, String> buffer = new CoalescingSingleWriterBuffer<String, String>(8, ConflationPolicy.LATEST_MOVED_TO_TAIL);
+
+        buffer.offer("VOD", "VOD 1");
+        buffer.offer("BP", "BP 1");
+        buffer.offer("VOD", "VOD 2");
+
+        List<String> bucket = new ArrayList<String>() {
+            @Override
+            public boolean add(String value) {
+                buffer.offer("RBS", "RBS " + size()); // the producer keeps appending while the poll runs
+                return super.add(value);
+            }
+        };
+
+        assertEquals(2, buffer.poll(bucket));
+        assertEquals(asList("BP 1", "VOD 2"), bucket);
+        assertEquals(asList("RBS 1"), drain(buffer));
+    }
+
+    @Test
+    public void shouldReplaceInPlaceWhenThereIsNoRoomToMoveToTheTail() {
+        CoalescingSingleWriterBuffer<String, String> buffer = new CoalescingSingleWriterBuffer<String, String>(2, ConflationPolicy.LATEST_MOVED_TO_TAIL);
+
+        buffer.offer("VOD", "VOD 1");
+        buffer.offer("BP", "BP 1");
+        assertTrue(buffer.offer("VOD", "VOD 2"));
+
+        assertEquals(asList("VOD 2", "BP 1"), drain(buffer));
+    }
+
+    @Test
+    public void shouldOnlyEndTheBatchOnTheLastValueThatIsDelivered() {
+        CoalescingSingleWriterBuffer<String, String> buffer = new CoalescingSingleWriterBuffer<String, String>(8, ConflationPolicy.LATEST_MOVED_TO_TAIL);
+        final List<String> batchEnds = new ArrayList<String>();
+
+        buffer.offer("BP", "BP 1");
+        buffer.offer("VOD", "VOD 1");
+        buffer.offer("BP", "BP 2"); // leaves the last slot but one skipped
+
+        assertEquals(2, buffer.poll(new ValueHandler<String, String>() {
+            @Override
+            public void onValue(String key, String value, boolean endOfBatch) {
+                if (endOfBatch) {
+                    batchEnds.add(value);
+                }
+            }
+        }));
+        assertEquals(asList("BP 2"), batchEnds);
+    }
+
+    @Test
+    public void shouldKeepTheFirstValueWhenFirstWins() {
+        CoalescingSingleWriterBuffer<String, String> buffer = new CoalescingSingleWriterBuffer<String, String>(8, ConflationPolicy.FIRST_WINS);
+
+        buffer.offer("VOD", "VOD 1");
+        buffer.offer("BP", "BP 1");
+        buffer.offer("VOD", "VOD 2");
+
+        assertEquals(asList("VOD 1", "BP 1"), drain(buffer));
+
+        buffer.offer("VOD", "VOD 3");
+        assertEquals(asList("VOD 3"), drain(buffer));
+    }
+
+}
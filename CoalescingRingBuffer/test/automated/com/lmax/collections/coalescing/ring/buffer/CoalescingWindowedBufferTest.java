@@ -0,0 +1,169 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CoalescingWindowedBufferTest extends FunctionalTest {
+
+    private final ManualClock clock = new ManualClock();
+    private final CoalescingWindowedBuffer<Long, String> windowed = new CoalescingWindowedBuffer<Long, String>(16, 100, TimeUnit.MICROSECONDS, clock);
+    private final List<String> bucket = new ArrayList<String>();
+
+    @Override
+    public CoalescingBuffer<Long, MarketSnapshot> createBuffer(int capacity) {
+        return new CoalescingWindowedBuffer<Long, MarketSnapshot>(capacity, 0, TimeUnit.MICROSECONDS);
+    }
+
+    @Test
+    public void shouldDeliverTheFirstValueOfAKeyStraightAway() {
+        windowed.offer(1L, "1");
+
+        assertEquals(1, windowed.poll(bucket));
+        assertEquals(asList("1"), bucket);
+    }
+
+    @Test
+    public void shouldHoldBackValuesUntilTheWindowCloses() {
+        windowed.offer(1L, "1");
+        windowed.poll(bucket);
+
+        clock.advance(50);
+        windowed.offer(1L, "1'");
+        assertEquals(0, windowed.poll(bucket));
+        windowed.offer(1L, "1''");
+        assertEquals(0, windowed.poll(bucket));
+        assertEquals(1, windowed.size());
+
+        clock.advance(50);
+        assertEquals(1, windowed.poll(bucket));
+        assertEquals(asList("1", "1''"), bucket);
+    }
+
+    @Test
+    public void shouldOpenTheNextWindowWhenAHeldValueGoesOut() {
+        windowed.offer(1L, "1");
+        windowed.poll(bucket);
+        windowed.offer(1L, "2");
+
+        clock.advance(120);
+        windowed.poll(bucket);
+        windowed.offer(1L, "3");
+
+        clock.advance(90);
+        assertEquals(0, windowed.poll(bucket));
+        clock.advance(10);
+        assertEquals(1, windowed.poll(bucket));
+        assertEquals(asList("1", "2", "3"), bucket);
+    }
+
+    @Test
+    public void shouldForgetAWindowThatClosesWithNothingHeld() {
+        windowed.offer(1L, "1");
+        windowed.poll(bucket);
+
+        clock.advance(100);
+        assertEquals(0, windowed.poll(bucket));
+        windowed.offer(1L, "2");
+
+        assertEquals(1, windowed.poll(bucket));
+        assertEquals(asList("1", "2"), bucket);
+    }
+
+    @Test
+    public void shouldThrottleEachKeyOnItsOwn() {
+        windowed.offer(1L, "1");
+        windowed.poll(bucket);
+        windowed.offer(1L, "1'");
+
+        clock.advance(60);
+        windowed.offer(2L, "2");
+        windowed.poll(bucket);
+
+        clock.advance(40);
+        windowed.offer(2L, "2'");
+        windowed.poll(bucket);
+
+        assertEquals(asList("1", "2", "1'"), bucket);
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(160), windowed.nextWindowCloses());
+    }
+
+    @Test
+    public void shouldKeepWhatABoundedPollLeftForTheNext() {
+        windowed.offer(1L, "1");
+        windowed.offer(2L, "2");
+        windowed.offer(3L, "3");
+
+        assertEquals(2, windowed.poll(bucket, 2));
+        assertEquals(1, windowed.poll(bucket, 2));
+        assertEquals(asList("1", "2", "3"), bucket);
+    }
+
+    @Test
+    public void shouldOnlyBeEmptyWhenNothingIsDue() {
+        assertTrue(windowed.isEmpty());
+        windowed.offer(1L, "1");
+        assertFalse(windowed.isEmpty());
+        windowed.poll(bucket);
+
+        windowed.offer(1L, "1'");
+        windowed.poll(bucket);
+        assertTrue(windowed.isEmpty());
+
+        clock.advance(100);
+        assertFalse(windowed.isEmpty());
+    }
+
+    @Test
+    public void shouldEndTheBatchOnTheLastValueDelivered() {
+        final List<String> ends = new ArrayList<String>();
+        windowed.offer(1L, "1");
+        windowed.offer(2L, "2");
+
+        windowed.poll(new ValueHandler<Long, String>() {
+            @Override
+            public void onValue(Long key, String value, boolean endOfBatch) {
+                if (endOfBatch) {
+                    ends.add(value);
+                }
+            }
+        });
+
+        assertEquals(asList("2"), ends);
+    }
+
+    private static final class ManualClock implements Clock {
+        private long nanoTime = 0;
+
+        void advance(long micros) {
+            nanoTime += TimeUnit.MICROSECONDS.toNanos(micros);
+        }
+
+        @Override
+        public long nanoTime() {
+            return nanoTime;
+        }
+    }
+
+}
@@ -0,0 +1,171 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DenseKeyCoalescingBufferTest {
+
+    private final List<String> bucket = new ArrayList<String>();
+
+    @Test
+    public void shouldCollapseUpdatesToTheSameKey() {
+        DenseKeyCoalescingBuffer<String> buffer = new DenseKeyCoalescingBuffer<String>(10);
+
+        buffer.offer(3, "3");
+        buffer.offer(1, "1");
+        buffer.offer(3, "3'");
+
+        assertEquals(2, buffer.size());
+        assertEquals(2, buffer.poll(bucket));
+        assertEquals(asList("1", "3'"), bucket);
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void shouldNeverRejectAKeyInRange() {
+        DenseKeyCoalescingBuffer<String> buffer = new DenseKeyCoalescingBuffer<String>(100000);
+
+        for (int key = 0; key < 100000; key++) {
+            assertTrue(buffer.offer(key, Integer.toString(key)));
+        }
+
+        assertEquals(100000, buffer.poll(bucket));
+        assertEquals("99999", bucket.get(99999));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void shouldRefuseAKeyOutOfRange() {
+        new DenseKeyCoalescingBuffer<String>(10).offer(10, "10");
+    }
+
+    @Test
+    public void shouldDeliverAgainOnceAKeyChangesAfterAPoll() {
+        DenseKeyCoalescingBuffer<String> buffer = new DenseKeyCoalescingBuffer<String>(10);
+
+        buffer.offer(1, "1");
+        buffer.poll(bucket);
+        assertEquals(0, buffer.poll(bucket));
+
+        buffer.offer(1, "1'");
+        assertEquals(1, buffer.poll(bucket));
+        assertEquals(asList("1", "1'"), bucket);
+    }
+
+    @Test
+    public void shouldLeaveWhatABoundedPollHadNoRoomFor() {
+        DenseKeyCoalescingBuffer<String> buffer = new DenseKeyCoalescingBuffer<String>(10000);
+        buffer.offer(1, "1");
+        buffer.offer(2, "2");
+        buffer.offer(5000, "5000");
+
+        assertEquals(1, buffer.poll(bucket, 1));
+        buffer.offer(2, "2'");
+        assertEquals(2, buffer.poll(bucket, 2));
+        assertEquals(0, buffer.poll(bucket, 2));
+        assertEquals(asList("1", "2'", "5000"), bucket);
+    }
+
+    @Test
+    public void shouldStartABoundedPollWhereTheLastOneStopped() {
+        DenseKeyCoalescingBuffer<String> buffer = new DenseKeyCoalescingBuffer<String>(10000);
+        buffer.offer(1, "1");
+        buffer.offer(9000, "9000");
+
+        buffer.poll(bucket, 1);
+        buffer.offer(1, "1'");
+        buffer.poll(bucket, 1);
+
+        assertEquals(asList("1", "9000"), bucket);
+    }
+
+    @Test
+    public void shouldDrainIntoAnArrayFromTheGivenOffset() {
+        DenseKeyCoalescingBuffer<String> buffer = new DenseKeyCoalescingBuffer<String>(10);
+        buffer.offer(1, "1");
+        buffer.offer(2, "2");
+
+        String[] values = new String[3];
+        assertEquals(2, buffer.poll(values, 1, 5));
+        assertArrayEquals(new String[] {null, "1", "2"}, values);
+    }
+
+    @Test
+    public void shouldEndTheBatchOnTheLastKey() {
+        DenseKeyCoalescingBuffer<String> buffer = new DenseKeyCoalescingBuffer<String>(200);
+        final List<String> ends = new ArrayList<String>();
+        buffer.offer(150, "150");
+        buffer.offer(7, "7");
+
+        buffer.poll(new IntValueHandler<String>() {
+            @Override
+            public void onValue(int key, String value, boolean endOfBatch) {
+                bucket.add(key + "=" + value);
+                if (endOfBatch) {
+                    ends.add(value);
+                }
+            }
+        });
+
+        assertEquals(asList("7=7", "150=150"), bucket);
+        assertEquals(asList("150"), ends);
+    }
+
+    @Test
+    public void shouldSeeTheLastValueOfEveryKeyWhilePolledConcurrently() throws InterruptedException {
+        final int numberOfKeys = 5000;
+        final int updates = 2000000;
+        final DenseKeyCoalescingBuffer<Integer> buffer = new DenseKeyCoalescingBuffer<Integer>(numberOfKeys);
+
+        Thread producer = new Thread("producer") {
+            @Override
+            public void run() {
+                for (int i = 0; i < updates; i++) {
+                    buffer.offer(i % numberOfKeys, i);
+                }
+            }
+        };
+        producer.start();
+
+        final int[] lastValues = new int[numberOfKeys];
+        IntValueHandler<Integer> consumer = new IntValueHandler<Integer>() {
+            @Override
+            public void onValue(int key, Integer value, boolean endOfBatch) {
+                assertTrue("went backwards for key " + key, value >= lastValues[key]);
+                lastValues[key] = value;
+            }
+        };
+
+        while (producer.isAlive()) {
+            buffer.poll(consumer);
+        }
+        producer.join();
+        buffer.poll(consumer);
+
+        assertEquals(0, buffer.poll(consumer));
+        for (int key = 0; key < numberOfKeys; key++) {
+            assertEquals(updates - numberOfKeys + key, lastValues[key]);
+        }
+    }
+
+}
@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static com.lmax.collections.coalescing.ring.buffer.MarketSnapshot.createMarketSnapshot;
+import static java.util.Arrays.asList;
 import static org.junit.Assert.*;
 import static org.junit.Assert.assertSame;
 
@@ -37,7 +38,7 @@ public class FunctionalTest {
     }
 
     public CoalescingBuffer<Long, MarketSnapshot> createBuffer(int capacity) {
-        return CoalescingBufferFactory.create(capacity);
+        return new CoalescingRingBuffer<Long, MarketSnapshot>(capacity);
     }
 
     @Test
@@ -100,13 +101,112 @@ public class FunctionalTest {
 
     @Test
     public void shouldUseObjectEqualityToCompareKeys() throws Exception {
-        CoalescingBuffer<String, Object> buffer = CoalescingBufferFactory.create(2);
+        CoalescingBuffer<String, Object> buffer = CoalescingBufferFactory.<String, Object>builder().capacity(2).build();
 
         buffer.offer(new String("foo"), new Object());
         buffer.offer(new String("boo"), new Object());
         assertTrue(buffer.offer(new String("boo"), new Object()));
     }
 
+    @Test
+    public void shouldHandOverKeysAndValuesToAHandlerAndMarkTheEndOfTheBatch() {
+        add(VOD_SNAPSHOT_1);
+        add(BP_SNAPSHOT);
+        add(VOD_SNAPSHOT_2);
+
+        final List<Object> handled = new ArrayList<Object>();
+        int readCount = buffer.poll(new ValueHandler<Long, MarketSnapshot>() {
+            @Override
+            public void onValue(Long key, MarketSnapshot value, boolean endOfBatch) {
+                handled.add(key);
+                handled.add(value);
+                handled.add(endOfBatch);
+            }
+        });
+
+        assertEquals(2, readCount);
+        assertEquals(asList(1L, VOD_SNAPSHOT_2, false, 2L, BP_SNAPSHOT, true), handled);
+        assertContains();
+    }
+
+    @Test
+    public void shouldOnlyTakeUpToTheMaximumNumberOfValues() {
+        add(VOD_SNAPSHOT_1);
+        add(BP_SNAPSHOT);
+
+        List<MarketSnapshot> bucket = new ArrayList<MarketSnapshot>();
+        assertEquals(1, buffer.poll(bucket, 1));
+        assertEquals(asList(VOD_SNAPSHOT_1), bucket);
+
+        assertContains(BP_SNAPSHOT);
+    }
+
+    @Test
+    public void shouldKeepCollapsingValuesLeftBehindByABoundedPoll() {
+        add(VOD_SNAPSHOT_1);
+        add(BP_SNAPSHOT);
+        buffer.poll(new ArrayList<MarketSnapshot>(), 1);
+
+        MarketSnapshot bpSnapshot2 = createMarketSnapshot(2, 9, 10);
+        add(bpSnapshot2);
+        add(VOD_SNAPSHOT_2);
+
+        assertContains(bpSnapshot2, VOD_SNAPSHOT_2);
+    }
+
+    @Test
+    public void shouldDrainIntoAnArrayFromTheGivenOffset() {
+        add(VOD_SNAPSHOT_1);
+        add(BP_SNAPSHOT);
+
+        MarketSnapshot[] snapshots = new MarketSnapshot[3];
+        assertEquals(2, buffer.poll(snapshots, 1, 5));
+        assertArrayEquals(new MarketSnapshot[] {null, VOD_SNAPSHOT_1, BP_SNAPSHOT}, snapshots);
+    }
+
+    @Test
+    public void shouldNotDrainMoreThanTheArrayCanHold() {
+        add(VOD_SNAPSHOT_1);
+        add(BP_SNAPSHOT);
+
+        MarketSnapshot[] snapshots = new MarketSnapshot[1];
+        assertEquals(1, buffer.poll(snapshots, 0, 5));
+        assertSame(VOD_SNAPSHOT_1, snapshots[0]);
+
+        assertContains(BP_SNAPSHOT);
+    }
+
+    @Test
+    public void shouldRefuseANegativeMaximumAndLeaveTheValuesInPlace() {
+        add(VOD_SNAPSHOT_1);
+        add(BP_SNAPSHOT);
+
+        try {
+            buffer.poll(new ArrayList<MarketSnapshot>(), -1);
+            fail("polled with a negative maximum");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        assertContains(VOD_SNAPSHOT_1, BP_SNAPSHOT);
+    }
+
+    @Test
+    public void shouldRefuseAnOffsetOutsideTheArrayAndLeaveTheValuesInPlace() {
+        add(VOD_SNAPSHOT_1);
+        add(BP_SNAPSHOT);
+
+        for (int offset : new int[] {-1, 3}) {
+            try {
+                buffer.poll(new MarketSnapshot[2], offset, 5);
+                fail("polled from offset " + offset);
+            } catch (IndexOutOfBoundsException expected) {
+            }
+        }
+
+        assertEquals(0, buffer.poll(new MarketSnapshot[2], 2, 5));
+        assertContains(VOD_SNAPSHOT_1, BP_SNAPSHOT);
+    }
+
     private void add(MarketSnapshot snapshot) {
         assertTrue(buffer.offer(snapshot.getInstrumentId(), snapshot));
     }
@@ -0,0 +1,105 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class InterProcessCoalescingTest {
+
+    private static final long NUMBER_OF_UPDATES = 5 * 1000 * 1000;
+    private static final int NUMBER_OF_KEYS = 16;
+
+    private final File file = createFile();
+    private Process producer;
+
+    private static File createFile() {
+        File sharedMemory = new File("/dev/shm");
+
+        try {
+            return File.createTempFile("coalescing-buffer", ".dat", sharedMemory.isDirectory() ? sharedMemory : null);
+        } catch (IOException exception) {
+            throw new AssertionError(exception);
+        }
+    }
+
+    @After
+    public void stopProducerAndDeleteFile() throws InterruptedException {
+        if (producer != null && producer.isAlive()) {
+            producer.destroyForcibly().waitFor(); // so that a failed assertion does not leave it spinning on a full buffer
+        }
+
+        file.delete();
+    }
+
+    @Test
+    public void shouldCoalesceUpdatesFromAProducerInAnotherProcess() throws Exception {
+        CoalescingOffHeapBuffer<MarketSnapshot> buffer = CoalescingOffHeapBuffer.create(file, 64, new MarketSnapshotRecord());
+        producer = startProducer();
+
+        final long[] lastBids = new long[NUMBER_OF_KEYS];
+        final boolean[] done = new boolean[1];
+        final MarketSnapshotRecord record = new MarketSnapshotRecord();
+
+        RecordHandler checker = new RecordHandler() {
+            @Override
+            public void onRecord(long key, ByteBuffer values, int offset, boolean endOfBatch) {
+                if (key == InterProcessProducer.POISON_PILL) {
+                    done[0] = true;
+                    return;
+                }
+
+                record.wrap(values, offset);
+                assertEquals(key, record.getInstrumentId());
+                assertEquals(-record.getBid(), record.getAsk());
+                assertTrue(record.getBid() >= lastBids[(int) key]);
+                lastBids[(int) key] = record.getBid();
+            }
+        };
+
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+
+        while (!done[0]) {
+            if (buffer.poll(checker) == 0 && System.nanoTime() > deadline) {
+                fail("the producer process did not finish");
+            }
+        }
+
+        assertEquals(0, producer.waitFor());
+
+        for (int key = 0; key < NUMBER_OF_KEYS; key++) {
+            assertEquals(NUMBER_OF_UPDATES - ((NUMBER_OF_UPDATES - key) % NUMBER_OF_KEYS), lastBids[key]);
+        }
+    }
+
+    private Process startProducer() throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), InterProcessProducer.class.getName(),
+                file.getPath(), String.valueOf(NUMBER_OF_UPDATES), String.valueOf(NUMBER_OF_KEYS))
+                .inheritIO()
+                .start();
+    }
+
+}
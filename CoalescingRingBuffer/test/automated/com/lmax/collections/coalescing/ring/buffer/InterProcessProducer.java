@@ -0,0 +1,54 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import java.io.File;
+
+import static com.lmax.collections.coalescing.ring.buffer.MarketSnapshot.createMarketSnapshot;
+
+/**
+ * The producing half of {@link InterProcessCoalescingTest}, run in a JVM of its own:
+ * offers bids 1 to numberOfUpdates round robin over numberOfKeys keys, then the poison pill.
+ */
+public final class InterProcessProducer {
+
+    static final long POISON_PILL = -1;
+
+    public static void main(String[] args) throws Exception {
+        File file = new File(args[0]);
+        long numberOfUpdates = Long.parseLong(args[1]);
+        int numberOfKeys = Integer.parseInt(args[2]);
+
+        CoalescingOffHeapBuffer<MarketSnapshot> buffer = CoalescingOffHeapBuffer.open(file, new MarketSnapshotRecord());
+        MarketSnapshot snapshot = createMarketSnapshot(0, 0, 0);
+
+        for (long bid = 1; bid <= numberOfUpdates; bid++) {
+            long key = bid % numberOfKeys;
+            snapshot.setInstrumentId(key);
+            snapshot.setBestBid(bid);
+            snapshot.setBestAsk(-bid);
+            offer(buffer, key, snapshot);
+        }
+
+        offer(buffer, POISON_PILL, snapshot);
+    }
+
+    private static void offer(CoalescingOffHeapBuffer<MarketSnapshot> buffer, long key, MarketSnapshot snapshot) {
+        while (!buffer.offer(key, snapshot)) {
+            Thread.yield();
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The off-heap layout of a {@link MarketSnapshot}: the codec producers write it with,
+ * and the flyweight consumers read it through.
+ */
+public final class MarketSnapshotRecord implements RecordCodec<MarketSnapshot> {
+
+    private static final int INSTRUMENT_ID_OFFSET = 0;
+    private static final int BID_OFFSET = 8;
+    private static final int ASK_OFFSET = 16;
+    private static final int LENGTH = 24;
+
+    private ByteBuffer buffer;
+    private int offset;
+
+    @Override public int recordLength() {
+        return LENGTH;
+    }
+
+    @Override public void write(MarketSnapshot snapshot, ByteBuffer buffer, int offset) {
+        buffer.putLong(offset + INSTRUMENT_ID_OFFSET, snapshot.getInstrumentId());
+        buffer.putLong(offset + BID_OFFSET, snapshot.getBid());
+        buffer.putLong(offset + ASK_OFFSET, snapshot.getAsk());
+    }
+
+    public MarketSnapshotRecord wrap(ByteBuffer buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+        return this;
+    }
+
+    public long getInstrumentId() {
+        return buffer.getLong(offset + INSTRUMENT_ID_OFFSET);
+    }
+
+    public long getBid() {
+        return buffer.getLong(offset + BID_OFFSET);
+    }
+
+    public long getAsk() {
+        return buffer.getLong(offset + ASK_OFFSET);
+    }
+
+    @Override
+    public String toString() {
+        return getInstrumentId() + ": " + getBid() + "/" + getAsk();
+    }
+}
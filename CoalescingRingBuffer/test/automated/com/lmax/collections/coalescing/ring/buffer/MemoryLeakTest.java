@@ -69,9 +69,31 @@ public class MemoryLeakTest {
 
     @Test
     public void shouldNotHaveMemoryLeaks() throws InterruptedException {
-        AtomicInteger counter = new AtomicInteger();
+        shouldNotHaveMemoryLeaks(new CoalescingRingBuffer<CountingKey, CountingValue>(16));
+    }
+
+    @Test
+    public void shouldNotHaveMemoryLeaksInThePaddedRingBuffer() throws InterruptedException {
+        shouldNotHaveMemoryLeaks(new CoalescingPaddedRingBuffer<CountingKey, CountingValue>(16));
+    }
+
+    @Test
+    public void shouldNotHaveMemoryLeaksInThePaddedSingleWriterBuffer() throws InterruptedException {
+        shouldNotHaveMemoryLeaks(new CoalescingPaddedSingleWriterBuffer<CountingKey, CountingValue>(16));
+    }
 
-        CoalescingBuffer<CountingKey, CountingValue> buffer = CoalescingBufferFactory.create(16);
+    @Test
+    public void shouldNotHaveMemoryLeaksInTheBufferTheFactoryPicks() throws InterruptedException {
+        shouldNotHaveMemoryLeaks(CoalescingBufferFactory.<CountingKey, CountingValue>builder().capacity(16).build());
+    }
+
+    @Test
+    public void shouldNotHaveMemoryLeaksInTheBlockingBufferTheFactoryPicks() throws InterruptedException {
+        shouldNotHaveMemoryLeaks(CoalescingBufferFactory.<CountingKey, CountingValue>builder().capacity(16).buildBlocking());
+    }
+
+    private void shouldNotHaveMemoryLeaks(CoalescingBuffer<CountingKey, CountingValue> buffer) throws InterruptedException {
+        AtomicInteger counter = new AtomicInteger();
 
         buffer.offer(new CountingKey(1, counter), new CountingValue(counter));
         buffer.offer(new CountingKey(2, counter), new CountingValue(counter));
@@ -0,0 +1,153 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.lmax.collections.coalescing.ring.buffer.MarketSnapshot.createMarketSnapshot;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PrimitiveKeyCoalescingBufferTest {
+    private final static MarketSnapshot VOD_SNAPSHOT_1 = createMarketSnapshot(1, 3, 4);
+    private final static MarketSnapshot VOD_SNAPSHOT_2 = createMarketSnapshot(1, 5, 6);
+    private final static MarketSnapshot BP_SNAPSHOT = createMarketSnapshot(2, 7, 8);
+
+    private final List<MarketSnapshot> bucket = new ArrayList<MarketSnapshot>();
+
+    @Test
+    public void shouldCollapseLongKeyedUpdatesAndPreserveOrdering() {
+        LongCoalescingBuffer<MarketSnapshot> buffer = new LongCoalescingRingBuffer<MarketSnapshot>(10);
+
+        assertTrue(buffer.offer(1L, VOD_SNAPSHOT_1));
+        assertTrue(buffer.offer(2L, BP_SNAPSHOT));
+        assertTrue(buffer.offer(1L, VOD_SNAPSHOT_2));
+
+        assertEquals(2, buffer.poll(bucket));
+        assertEquals(asList(VOD_SNAPSHOT_2, BP_SNAPSHOT), bucket);
+    }
+
+    @Test
+    public void shouldNotCollapseLongKeyedValuesIfReadFastEnough() {
+        LongCoalescingBuffer<MarketSnapshot> buffer = new LongCoalescingRingBuffer<MarketSnapshot>(2);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(buffer.offer(1L, VOD_SNAPSHOT_1));
+            assertEquals(1, buffer.poll(bucket));
+        }
+
+        assertEquals(10, bucket.size());
+    }
+
+    @Test
+    public void shouldRejectNewLongKeyWhenFull() {
+        LongCoalescingBuffer<MarketSnapshot> buffer = new LongCoalescingRingBuffer<MarketSnapshot>(2);
+
+        assertTrue(buffer.offer(Long.MAX_VALUE, VOD_SNAPSHOT_1));
+        assertTrue(buffer.offer(Long.MIN_VALUE, BP_SNAPSHOT));
+        assertTrue(buffer.offer(Long.MAX_VALUE, VOD_SNAPSHOT_2));
+        assertFalse(buffer.offer(0L, BP_SNAPSHOT));
+    }
+
+    @Test
+    public void shouldLeaveLongKeyedValuesBeyondTheMaximumForTheNextPoll() {
+        LongCoalescingBuffer<MarketSnapshot> buffer = new LongCoalescingRingBuffer<MarketSnapshot>(10);
+        buffer.offer(2L, BP_SNAPSHOT);
+        buffer.offer(1L, VOD_SNAPSHOT_1);
+
+        MarketSnapshot[] snapshots = new MarketSnapshot[2];
+        assertEquals(1, buffer.poll(snapshots, 0, 1));
+        assertTrue(buffer.offer(1L, VOD_SNAPSHOT_2));
+
+        assertEquals(1, buffer.poll(bucket, 10));
+        assertEquals(asList(BP_SNAPSHOT), asList(snapshots[0]));
+        assertEquals(asList(VOD_SNAPSHOT_2), bucket);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRefuseANegativeMaximumForLongKeys() {
+        new LongCoalescingRingBuffer<MarketSnapshot>(10).poll(bucket, -1);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void shouldRefuseAnOffsetOutsideTheArrayForIntKeys() {
+        new IntCoalescingRingBuffer<MarketSnapshot>(10).poll(new MarketSnapshot[2], 3, 1);
+    }
+
+    @Test
+    public void shouldHandOverLongKeysToAHandler() {
+        LongCoalescingBuffer<MarketSnapshot> buffer = new LongCoalescingRingBuffer<MarketSnapshot>(10);
+        buffer.offer(1L, VOD_SNAPSHOT_1);
+        buffer.offer(2L, BP_SNAPSHOT);
+
+        final List<Object> handled = new ArrayList<Object>();
+        buffer.poll(new LongValueHandler<MarketSnapshot>() {
+            @Override
+            public void onValue(long key, MarketSnapshot value, boolean endOfBatch) {
+                handled.add(key);
+                handled.add(value);
+                handled.add(endOfBatch);
+            }
+        });
+
+        assertEquals(asList(1L, VOD_SNAPSHOT_1, false, 2L, BP_SNAPSHOT, true), handled);
+    }
+
+    @Test
+    public void shouldCollapseIntKeyedUpdatesAndPreserveOrdering() {
+        IntCoalescingBuffer<MarketSnapshot> buffer = new IntCoalescingRingBuffer<MarketSnapshot>(10);
+
+        assertTrue(buffer.offer(1, VOD_SNAPSHOT_1));
+        assertTrue(buffer.offer(2, BP_SNAPSHOT));
+        assertTrue(buffer.offer(1, VOD_SNAPSHOT_2));
+
+        assertEquals(2, buffer.poll(bucket));
+        assertEquals(asList(VOD_SNAPSHOT_2, BP_SNAPSHOT), bucket);
+    }
+
+    @Test
+    public void shouldRejectNewIntKeyWhenFull() {
+        IntCoalescingBuffer<MarketSnapshot> buffer = new IntCoalescingRingBuffer<MarketSnapshot>(2);
+
+        assertTrue(buffer.offer(1, VOD_SNAPSHOT_1));
+        assertTrue(buffer.offer(2, BP_SNAPSHOT));
+        assertFalse(buffer.offer(3, VOD_SNAPSHOT_2));
+    }
+
+    @Test
+    public void shouldHandOverIntKeysToAHandler() {
+        IntCoalescingBuffer<MarketSnapshot> buffer = new IntCoalescingRingBuffer<MarketSnapshot>(10);
+        buffer.offer(1, VOD_SNAPSHOT_1);
+        buffer.offer(2, BP_SNAPSHOT);
+
+        final List<Object> handled = new ArrayList<Object>();
+        buffer.poll(new IntValueHandler<MarketSnapshot>() {
+            @Override
+            public void onValue(int key, MarketSnapshot value, boolean endOfBatch) {
+                handled.add(key);
+                handled.add(value);
+                handled.add(endOfBatch);
+            }
+        });
+
+        assertEquals(asList(1, VOD_SNAPSHOT_1, false, 2, BP_SNAPSHOT, true), handled);
+    }
+
+}
@@ -0,0 +1,152 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StripedCoalescingBufferTest extends FunctionalTest {
+
+    @Override
+    public CoalescingBuffer<Long, MarketSnapshot> createBuffer(int capacity) {
+        return new StripedCoalescingBuffer<Long, MarketSnapshot>(1, capacity); // one stripe behaves exactly like the ring it wraps
+    }
+
+    @Test
+    public void shouldDrainEveryStripeInOnePoll() {
+        StripedCoalescingBuffer<Long, String> striped = new StripedCoalescingBuffer<Long, String>(4, 8);
+        List<String> bucket = new ArrayList<String>();
+
+        for (long key = 0; key < 16; key++) {
+            striped.offer(key, "v" + key);
+        }
+
+        assertEquals(16, striped.poll(bucket));
+        assertTrue(striped.isEmpty());
+
+        Collections.sort(bucket);
+        assertEquals(16, bucket.size());
+        assertEquals("v0", bucket.get(0));
+    }
+
+    @Test
+    public void shouldStartEachPollFromTheNextStripe() {
+        StripedCoalescingBuffer<Long, String> striped = new StripedCoalescingBuffer<Long, String>(2, 8);
+        long[] keyInStripe = keysInEachStripe(striped);
+        List<String> bucket = new ArrayList<String>();
+
+        striped.offer(keyInStripe[0], "0");
+        striped.offer(keyInStripe[1], "1");
+        striped.poll(bucket, 1);
+
+        striped.offer(keyInStripe[0], "0'");
+        striped.poll(bucket, 1);
+
+        assertEquals(asList("0", "1"), bucket);
+    }
+
+    @Test
+    public void shouldOnlyEndTheBatchOnTheLastValueOfTheLastStripe() {
+        StripedCoalescingBuffer<Long, String> striped = new StripedCoalescingBuffer<Long, String>(4, 8);
+        final List<Boolean> endsOfBatch = new ArrayList<Boolean>();
+
+        for (long key = 0; key < 16; key++) {
+            striped.offer(key, "v" + key);
+        }
+
+        striped.poll(new ValueHandler<Long, String>() {
+            @Override
+            public void onValue(Long key, String value, boolean endOfBatch) {
+                endsOfBatch.add(endOfBatch);
+            }
+        });
+
+        assertEquals(16, endsOfBatch.size());
+        assertEquals(1, Collections.frequency(endsOfBatch, true));
+        assertTrue(endsOfBatch.get(15));
+    }
+
+    @Test
+    public void shouldKeepEachProducersLatestValuesWhenEveryStripeHasItsOwnWriter() throws InterruptedException {
+        final StripedCoalescingBuffer<Long, Long> striped = new StripedCoalescingBuffer<Long, Long>(4, 64);
+        final long updatesPerKey = 100000;
+        Thread[] producers = new Thread[striped.numberOfStripes()];
+
+        for (int i = 0; i < producers.length; i++) {
+            final int stripe = i;
+
+            producers[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (long update = 1; update <= updatesPerKey; update++) {
+                        for (long key = 0; key < 32; key++) {
+                            if (striped.stripeFor(key) == stripe) {
+                                while (!striped.offer(key, update)) {
+                                    Thread.yield();
+                                }
+                            }
+                        }
+                    }
+                }
+            };
+            producers[i].start();
+        }
+
+        final long[] latest = new long[32];
+        ValueHandler<Long, Long> consumer = new ValueHandler<Long, Long>() {
+            @Override
+            public void onValue(Long key, Long value, boolean endOfBatch) {
+                assertTrue(value >= latest[key.intValue()]);
+                latest[key.intValue()] = value;
+            }
+        };
+
+        for (Thread producer : producers) {
+            while (producer.isAlive()) {
+                striped.poll(consumer);
+            }
+        }
+
+        striped.poll(consumer);
+
+        for (long value : latest) {
+            assertEquals(updatesPerKey, value);
+        }
+    }
+
+    private static long[] keysInEachStripe(StripedCoalescingBuffer<Long, String> striped) {
+        long[] keys = new long[striped.numberOfStripes()];
+        boolean[] found = new boolean[keys.length];
+
+        for (long key = 0; key < 1000; key++) {
+            int stripe = striped.stripeFor(key);
+
+            if (!found[stripe]) {
+                keys[stripe] = key;
+                found[stripe] = true;
+            }
+        }
+
+        return keys;
+    }
+
+}
@@ -24,7 +24,10 @@ import static org.junit.Assert.assertEquals;
 public class ThreadSafetyTest {
 
     private static final int NUMBER_OF_INSTRUMENTS = 5000000;
+    private static final int NUMBER_OF_MULTI_WRITER_INSTRUMENTS = 500000;
     private static final long POISON_PILL = -1;
+    private static final int NUMBER_OF_SHARED_KEYS = 16;
+    private static final long NUMBER_OF_ROUNDS = 50000;
 
     private static final long FIRST_BID = 3;
     private static final long SECOND_BID = 4;
@@ -36,20 +39,30 @@ public class ThreadSafetyTest {
     private static class Producer extends Thread {
 
         private final CoalescingBuffer<Long, MarketSnapshot> snapshotBuffer;
+        private final int numberOfInstruments;
+        private final int producerIndex;
+        private final int numberOfProducers;
 
         private Producer(CoalescingBuffer<Long, MarketSnapshot> snapshotBuffer) {
-            super("producer");
+            this(snapshotBuffer, NUMBER_OF_INSTRUMENTS, 0, 1);
+        }
+
+        private Producer(CoalescingBuffer<Long, MarketSnapshot> snapshotBuffer, int numberOfInstruments, int producerIndex, int numberOfProducers) {
+            super("producer-" + producerIndex);
             this.snapshotBuffer = snapshotBuffer;
+            this.numberOfInstruments = numberOfInstruments;
+            this.producerIndex = producerIndex;
+            this.numberOfProducers = numberOfProducers;
         }
 
         @Override
         public void run() {
-            for (long key = 0; key < NUMBER_OF_INSTRUMENTS; key++) {
+            for (long key = producerIndex; key < numberOfInstruments; key += numberOfProducers) {
                 put(key, FIRST_BID, FIRST_ASK);
                 put(key, SECOND_BID, SECOND_ASK);
             }
 
-            put(POISON_PILL, POISON_PILL, POISON_PILL);
+            put(POISON_PILL - producerIndex, POISON_PILL, POISON_PILL); // one pill per producer so that they do not collapse
         }
 
         private void put(long key, long bid, long ask) {
@@ -61,12 +74,19 @@ public class ThreadSafetyTest {
     }
 
     private static class Consumer extends Thread {
-        private final MarketSnapshot[] snapshots = new MarketSnapshot[NUMBER_OF_INSTRUMENTS];
+        private final MarketSnapshot[] snapshots;
         private final CoalescingBuffer<Long, MarketSnapshot> snapshotBuffer;
+        private int remainingProducers;
 
         private Consumer(CoalescingBuffer<Long, MarketSnapshot> snapshotBuffer) {
+            this(snapshotBuffer, NUMBER_OF_INSTRUMENTS, 1);
+        }
+
+        private Consumer(CoalescingBuffer<Long, MarketSnapshot> snapshotBuffer, int numberOfInstruments, int numberOfProducers) {
             super("consumer");
             this.snapshotBuffer = snapshotBuffer;
+            this.snapshots = new MarketSnapshot[numberOfInstruments];
+            this.remainingProducers = numberOfProducers;
         }
 
         @Override
@@ -77,8 +97,12 @@ public class ThreadSafetyTest {
                 fill(bucket);
 
                 for (MarketSnapshot snapshot : bucket) {
-                    if (snapshot.getInstrumentId() == POISON_PILL) {
-                        return;
+                    if (isPoisonPill(snapshot)) {
+                        if (--remainingProducers == 0) {
+                            return;
+                        }
+
+                        continue;
                     }
 
                     snapshots[indexOf(snapshot)] = snapshot;
@@ -88,6 +112,10 @@ public class ThreadSafetyTest {
             }
         }
 
+        private boolean isPoisonPill(MarketSnapshot snapshot) {
+            return snapshot.getInstrumentId() <= POISON_PILL; // each producer sends its pill under its own key
+        }
+
         private int indexOf(MarketSnapshot snapshot) {
             return (int) snapshot.getInstrumentId();
         }
@@ -99,7 +127,52 @@ public class ThreadSafetyTest {
 
     @Test
     public void shouldSeeLastPrices() throws InterruptedException {
-        CoalescingBuffer<Long, MarketSnapshot> buffer = CoalescingBufferFactory.create(1 << 20);
+        CoalescingBuffer<Long, MarketSnapshot> buffer = new CoalescingRingBuffer<Long, MarketSnapshot>(1 << 20);
+
+        Producer producer = new Producer(buffer);
+        Consumer consumer = new Consumer(buffer);
+
+        producer.start();
+        consumer.start();
+
+        consumer.join();
+
+        assertLastPrices(consumer);
+    }
+
+    @Test
+    public void shouldSeeLastPricesThroughThePaddedRingBuffer() throws InterruptedException {
+        CoalescingBuffer<Long, MarketSnapshot> buffer = new CoalescingPaddedRingBuffer<Long, MarketSnapshot>(1 << 20);
+
+        Producer producer = new Producer(buffer, NUMBER_OF_MULTI_WRITER_INSTRUMENTS, 0, 1);
+        Consumer consumer = new Consumer(buffer, NUMBER_OF_MULTI_WRITER_INSTRUMENTS, 1);
+
+        producer.start();
+        consumer.start();
+
+        consumer.join();
+
+        assertLastPrices(consumer);
+    }
+
+    @Test
+    public void shouldSeeLastPricesThroughTheGrowableRingBuffer() throws InterruptedException {
+        CoalescingBuffer<Long, MarketSnapshot> buffer = new CoalescingGrowableRingBuffer<Long, MarketSnapshot>(2, 1 << 20);
+
+        Producer producer = new Producer(buffer, NUMBER_OF_MULTI_WRITER_INSTRUMENTS, 0, 1);
+        Consumer consumer = new Consumer(buffer, NUMBER_OF_MULTI_WRITER_INSTRUMENTS, 1);
+
+        producer.start();
+        consumer.start();
+
+        consumer.join();
+
+        assertLastPrices(consumer);
+    }
+
+    @Test
+    public void shouldSeeLastPricesThroughTheVarHandleRingBuffer() throws InterruptedException {
+        CoalescingBuffer<Long, MarketSnapshot> buffer = new CoalescingVarHandleRingBuffer<Long, MarketSnapshot>(1 << 20);
 
         Producer producer = new Producer(buffer);
         Consumer consumer = new Consumer(buffer);
@@ -109,7 +182,138 @@ public class ThreadSafetyTest {
 
         consumer.join();
 
-        for (int instrument = 0; instrument < NUMBER_OF_INSTRUMENTS; instrument++) {
+        assertLastPrices(consumer);
+    }
+
+    @Test
+    public void shouldSeeLastPricesWithTwoProducers() throws InterruptedException {
+        shouldSeeLastPricesWithMultipleProducers(2);
+    }
+
+    @Test
+    public void shouldSeeLastPricesWithFourProducers() throws InterruptedException {
+        shouldSeeLastPricesWithMultipleProducers(4);
+    }
+
+    @Test
+    public void shouldSeeLastPricesWithEightProducers() throws InterruptedException {
+        shouldSeeLastPricesWithMultipleProducers(8);
+    }
+
+    private void shouldSeeLastPricesWithMultipleProducers(int numberOfProducers) throws InterruptedException {
+        CoalescingBuffer<Long, MarketSnapshot> buffer = new CoalescingMultiWriterBuffer<Long, MarketSnapshot>(1 << 20);
+
+        Consumer consumer = new Consumer(buffer, NUMBER_OF_MULTI_WRITER_INSTRUMENTS, numberOfProducers);
+        consumer.start();
+
+        for (int i = 0; i < numberOfProducers; i++) {
+            new Producer(buffer, NUMBER_OF_MULTI_WRITER_INSTRUMENTS, i, numberOfProducers).start();
+        }
+
+        consumer.join();
+
+        assertLastPrices(consumer);
+    }
+
+    @Test
+    public void shouldSeeEachProducersUpdatesInOrderWhenProducersShareKeys() throws InterruptedException {
+        int numberOfProducers = 4;
+        CoalescingBuffer<Long, MarketSnapshot> buffer = new CoalescingMultiWriterBuffer<Long, MarketSnapshot>(1 << 10);
+
+        SharedKeyConsumer consumer = new SharedKeyConsumer(buffer, numberOfProducers);
+        consumer.start();
+
+        for (int i = 0; i < numberOfProducers; i++) {
+            new SharedKeyProducer(buffer, i).start();
+        }
+
+        consumer.join();
+
+        assertEquals("updates delivered out of order", 0, consumer.outOfOrder);
+        for (int key = 0; key < NUMBER_OF_SHARED_KEYS; key++) {
+            assertEquals("last update for key " + key, NUMBER_OF_ROUNDS, consumer.lastDelivered[key].getAsk());
+        }
+    }
+
+    /**
+     * offers every shared key once a round, with the producer as the bid and the round as the ask
+     */
+    private static class SharedKeyProducer extends Thread {
+        private final CoalescingBuffer<Long, MarketSnapshot> snapshotBuffer;
+        private final int producerIndex;
+
+        private SharedKeyProducer(CoalescingBuffer<Long, MarketSnapshot> snapshotBuffer, int producerIndex) {
+            super("shared-key-producer-" + producerIndex);
+            this.snapshotBuffer = snapshotBuffer;
+            this.producerIndex = producerIndex;
+        }
+
+        @Override
+        public void run() {
+            for (long round = 1; round <= NUMBER_OF_ROUNDS; round++) {
+                for (long key = 0; key < NUMBER_OF_SHARED_KEYS; key++) {
+                    put(key, createMarketSnapshot(key, producerIndex, round));
+                }
+            }
+
+            put(POISON_PILL - producerIndex, createMarketSnapshot(POISON_PILL - producerIndex, POISON_PILL, POISON_PILL));
+        }
+
+        private void put(long key, MarketSnapshot snapshot) {
+            while (!snapshotBuffer.offer(key, snapshot)) {
+                Thread.yield();
+            }
+        }
+    }
+
+    private static class SharedKeyConsumer extends Thread {
+        private final CoalescingBuffer<Long, MarketSnapshot> snapshotBuffer;
+        private final long[][] lastRounds; // by producer then key
+        private final MarketSnapshot[] lastDelivered = new MarketSnapshot[NUMBER_OF_SHARED_KEYS];
+        private int remainingProducers;
+        private int outOfOrder;
+
+        private SharedKeyConsumer(CoalescingBuffer<Long, MarketSnapshot> snapshotBuffer, int numberOfProducers) {
+            super("shared-key-consumer");
+            this.snapshotBuffer = snapshotBuffer;
+            this.lastRounds = new long[numberOfProducers][NUMBER_OF_SHARED_KEYS];
+            this.remainingProducers = numberOfProducers;
+        }
+
+        @Override
+        public void run() {
+            ArrayList<MarketSnapshot> bucket = new ArrayList<MarketSnapshot>();
+
+            while (true) {
+                snapshotBuffer.poll(bucket);
+
+                for (MarketSnapshot snapshot : bucket) {
+                    if (snapshot.getInstrumentId() <= POISON_PILL) {
+                        if (--remainingProducers == 0) {
+                            return;
+                        }
+
+                        continue;
+                    }
+
+                    int key = (int) snapshot.getInstrumentId();
+                    long[] producerRounds = lastRounds[(int) snapshot.getBid()];
+
+                    if (snapshot.getAsk() < producerRounds[key]) {
+                        outOfOrder++;
+                    }
+
+                    producerRounds[key] = snapshot.getAsk();
+                    lastDelivered[key] = snapshot;
+                }
+
+                bucket.clear();
+            }
+        }
+    }
+
+    private void assertLastPrices(Consumer consumer) {
+        for (int instrument = 0; instrument < consumer.snapshots.length; instrument++) {
             MarketSnapshot snapshot = consumer.snapshots[instrument];
 
             assertEquals("bid for instrument " + instrument + ":", SECOND_BID, snapshot.getBid());
@@ -0,0 +1,111 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WaitStrategyTest {
+
+    private static List<WaitStrategy> strategies() {
+        return asList(new BusySpinWaitStrategy(), new YieldingWaitStrategy(), new BackoffWaitStrategy(), new BlockingWaitStrategy());
+    }
+
+    @Test
+    public void shouldTimeOutWhenNothingIsOffered() throws InterruptedException {
+        for (WaitStrategy strategy : strategies()) {
+            BlockingCoalescingBuffer<Long, String> buffer = new CoalescingRingBuffer<Long, String>(8, strategy);
+            List<String> bucket = new ArrayList<String>();
+
+            long start = System.nanoTime();
+            assertEquals(strategy.toString(), 0, buffer.poll(bucket, 20, TimeUnit.MILLISECONDS));
+            assertTrue(strategy.toString(), System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+        }
+    }
+
+    @Test
+    public void shouldReturnStraightAwayWhenValuesArePending() throws InterruptedException {
+        for (WaitStrategy strategy : strategies()) {
+            BlockingCoalescingBuffer<Long, String> buffer = new CoalescingRingBuffer<Long, String>(8, strategy);
+            List<String> bucket = new ArrayList<String>();
+            buffer.offer(1L, "1");
+
+            assertEquals(strategy.toString(), 1, buffer.poll(bucket, 1, TimeUnit.DAYS));
+            assertEquals(asList("1"), bucket);
+        }
+    }
+
+    @Test
+    public void shouldWakeATakingConsumerWhenAValueIsOffered() throws InterruptedException {
+        for (WaitStrategy strategy : strategies()) {
+            final BlockingCoalescingBuffer<Long, String> buffer = new CoalescingRingBuffer<Long, String>(8, strategy);
+
+            Thread producer = new Thread("producer") {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException exception) {
+                        throw new AssertionError(exception);
+                    }
+
+                    buffer.offer(1L, "1");
+                }
+            };
+            producer.start();
+
+            List<String> bucket = new ArrayList<String>();
+            assertEquals(strategy.toString(), 1, buffer.take(bucket));
+            assertEquals(asList("1"), bucket);
+            producer.join();
+        }
+    }
+
+    @Test
+    public void shouldWakeAConsumerOfTheMultiWriterBuffer() throws InterruptedException {
+        final BlockingCoalescingBuffer<Long, String> buffer = new CoalescingMultiWriterBuffer<Long, String>(8, new BlockingWaitStrategy());
+
+        for (int i = 0; i < 4; i++) {
+            final long key = i;
+            new Thread("producer-" + i) {
+                @Override
+                public void run() {
+                    buffer.offer(key, "value");
+                }
+            }.start();
+        }
+
+        List<String> bucket = new ArrayList<String>();
+        while (bucket.size() < 4) {
+            buffer.take(bucket);
+        }
+    }
+
+    @Test(expected = InterruptedException.class)
+    public void shouldStopWaitingWhenInterrupted() throws InterruptedException {
+        BlockingCoalescingBuffer<Long, String> buffer = new CoalescingRingBuffer<Long, String>(8, new BlockingWaitStrategy());
+
+        Thread.currentThread().interrupt();
+        buffer.take(new ArrayList<String>());
+    }
+
+}
@@ -0,0 +1,74 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer.benchmark;
+
+import com.lmax.collections.coalescing.ring.buffer.CoalescingArrayBuffer;
+import com.lmax.collections.coalescing.ring.buffer.CoalescingBuffer;
+import com.lmax.collections.coalescing.ring.buffer.CoalescingCasBuffer;
+import com.lmax.collections.coalescing.ring.buffer.CoalescingGrowableRingBuffer;
+import com.lmax.collections.coalescing.ring.buffer.CoalescingPowerOfTwoBuffer;
+import com.lmax.collections.coalescing.ring.buffer.CoalescingRingBuffer;
+import com.lmax.collections.coalescing.ring.buffer.CoalescingSingleWriterBuffer;
+import com.lmax.collections.coalescing.ring.buffer.CoalescingSynchronizedBuffer;
+import com.lmax.collections.coalescing.ring.buffer.CoalescingVarHandleRingBuffer;
+
+/**
+ * The buffers the benchmarks can be run against, named so that they can be chosen with -p bufferType=...
+ */
+public enum BufferType {
+    RING {
+        @Override public <K, V> CoalescingBuffer<K, V> create(int capacity) {
+            return new CoalescingRingBuffer<K, V>(capacity);
+        }
+    },
+    VAR_HANDLE {
+        @Override public <K, V> CoalescingBuffer<K, V> create(int capacity) {
+            return new CoalescingVarHandleRingBuffer<K, V>(capacity);
+        }
+    },
+    GROWABLE {
+        @Override public <K, V> CoalescingBuffer<K, V> create(int capacity) {
+            return new CoalescingGrowableRingBuffer<K, V>(capacity);
+        }
+    },
+    SINGLE_WRITER {
+        @Override public <K, V> CoalescingBuffer<K, V> create(int capacity) {
+            return new CoalescingSingleWriterBuffer<K, V>(capacity);
+        }
+    },
+    POWER_OF_TWO {
+        @Override public <K, V> CoalescingBuffer<K, V> create(int capacity) {
+            return new CoalescingPowerOfTwoBuffer<K, V>(capacity);
+        }
+    },
+    ARRAY {
+        @Override public <K, V> CoalescingBuffer<K, V> create(int capacity) {
+            return new CoalescingArrayBuffer<K, V>(capacity);
+        }
+    },
+    SYNCHRONIZED {
+        @Override public <K, V> CoalescingBuffer<K, V> create(int capacity) {
+            return new CoalescingSynchronizedBuffer<K, V>(capacity);
+        }
+    },
+    CAS {
+        @Override public <K, V> CoalescingBuffer<K, V> create(int capacity) {
+            return new CoalescingCasBuffer<K, V>(capacity);
+        }
+    };
+
+    public abstract <K, V> CoalescingBuffer<K, V> create(int capacity);
+
+}
@@ -0,0 +1,146 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer.benchmark;
+
+import com.lmax.collections.coalescing.ring.buffer.CoalescingBuffer;
+import com.lmax.collections.coalescing.ring.buffer.MarketSnapshot;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.lmax.collections.coalescing.ring.buffer.MarketSnapshot.createMarketSnapshot;
+
+/**
+ * One producer offering snapshots for keySpace instruments while one consumer drains them, both running
+ * for the whole iteration. Read the results as:
+ * <ul>
+ * <li>offerPoll:offer - offers per microsecond, the headline throughput</li>
+ * <li>offerPoll:offered / offerPoll:delivered - the compression ratio, how many offers each delivered value stood for</li>
+ * <li>offerPoll:rejected - offers turned away because the buffer was full</li>
+ * <li>gc.alloc.rate.norm from -prof gc - bytes allocated per operation</li>
+ * </ul>
+ * consumerTokens is handed to {@link Blackhole#consumeCPU} once per delivered value to model the work done with it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class CoalescingBufferBenchmark {
+
+    private static final int KEY_SEQUENCE_LENGTH = 1 << 16;
+
+    @State(Scope.Group)
+    public static class Buffer {
+        @Param
+        BufferType bufferType;
+
+        @Param({"256", "4096"})
+        int capacity;
+
+        @Param({"16", "1024"})
+        int keySpace;
+
+        @Param({"0", "100"})
+        long consumerTokens;
+
+        CoalescingBuffer<Long, MarketSnapshot> buffer;
+        Long[] keys;
+        MarketSnapshot[] snapshots;
+
+        @Setup(Level.Trial)
+        public void createKeys() {
+            Random random = new Random(42);
+            keys = new Long[KEY_SEQUENCE_LENGTH];
+            snapshots = new MarketSnapshot[KEY_SEQUENCE_LENGTH];
+
+            for (int i = 0; i < KEY_SEQUENCE_LENGTH; i++) {
+                long id = random.nextInt(keySpace);
+                keys[i] = id; // boxed up front so that allocation is the buffer's own
+                snapshots[i] = createMarketSnapshot(id, i, i + 1);
+            }
+        }
+
+        @Setup(Level.Iteration)
+        public void createBuffer() {
+            buffer = bufferType.create(capacity); // a fresh buffer so that one iteration's backlog does not leak into the next
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ProducerCounters {
+        public long offered;
+        public long rejected;
+        int next;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ConsumerCounters {
+        public long delivered;
+        final List<MarketSnapshot> bucket = new ArrayList<MarketSnapshot>();
+    }
+
+    @Benchmark
+    @Group("offerPoll")
+    @GroupThreads(1)
+    public boolean offer(Buffer state, ProducerCounters counters) {
+        int next = counters.next++ & (KEY_SEQUENCE_LENGTH - 1);
+
+        if (state.buffer.offer(state.keys[next], state.snapshots[next])) {
+            counters.offered++;
+            return true;
+        }
+
+        counters.rejected++;
+        return false;
+    }
+
+    @Benchmark
+    @Group("offerPoll")
+    @GroupThreads(1)
+    public void poll(Buffer state, ConsumerCounters counters, Blackhole blackhole) {
+        List<MarketSnapshot> bucket = counters.bucket;
+        int count = state.buffer.poll(bucket);
+
+        for (int i = 0; i < count; i++) {
+            blackhole.consume(bucket.get(i));
+            Blackhole.consumeCPU(state.consumerTokens);
+        }
+
+        counters.delivered += count;
+        bucket.clear();
+    }
+
+}
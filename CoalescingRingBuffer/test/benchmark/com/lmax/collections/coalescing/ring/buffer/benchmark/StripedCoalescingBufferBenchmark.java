@@ -0,0 +1,169 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer.benchmark;
+
+import com.lmax.collections.coalescing.ring.buffer.CoalescingBuffer;
+import com.lmax.collections.coalescing.ring.buffer.CoalescingMultiWriterBuffer;
+import com.lmax.collections.coalescing.ring.buffer.MarketSnapshot;
+import com.lmax.collections.coalescing.ring.buffer.StripedCoalescingBuffer;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.lmax.collections.coalescing.ring.buffer.MarketSnapshot.createMarketSnapshot;
+
+/**
+ * How offer throughput scales with the number of producers, for a {@link StripedCoalescingBuffer} with a
+ * stripe per producer against the single contended {@link CoalescingMultiWriterBuffer}. Every producer
+ * owns a disjoint share of the keys, as a partitioned feed handler pool would, and one consumer drains.
+ * <p>
+ * The number of producers is a thread group size rather than a parameter, so run {@link #main} to sweep
+ * it from 1 to 16; any other arguments are passed on to JMH.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class StripedCoalescingBufferBenchmark {
+
+    private static final int[] PRODUCER_COUNTS = {1, 2, 4, 8, 16};
+    private static final int KEY_SPACE = 1024;
+    private static final int CAPACITY = 4096;
+
+    @State(Scope.Group)
+    public static class Buffer {
+        @Param({"STRIPED", "MULTI_WRITER"})
+        String bufferType;
+
+        CoalescingBuffer<Long, MarketSnapshot> buffer;
+        StripedCoalescingBuffer<Long, MarketSnapshot> striped;
+
+        @Setup(Level.Iteration)
+        public void createBuffer(ThreadParams threadParams) {
+            int producers = threadParams.getGroupThreadCount() - 1; // any thread in the group may run this, so count everyone but the consumer
+
+            if (bufferType.equals("STRIPED")) {
+                striped = new StripedCoalescingBuffer<Long, MarketSnapshot>(producers, CAPACITY / producers);
+                buffer = striped;
+            } else {
+                striped = null;
+                buffer = new CoalescingMultiWriterBuffer<Long, MarketSnapshot>(CAPACITY);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Producer {
+        public long rejected;
+        Long[] keys;
+        MarketSnapshot[] snapshots;
+        int next;
+
+        @Setup(Level.Iteration)
+        public void chooseKeys(Buffer state, ThreadParams threadParams) {
+            int producer = threadParams.getSubgroupThreadIndex();
+            int producers = threadParams.getSubgroupThreadCount();
+            List<Long> keys = new ArrayList<Long>();
+
+            for (long key = 0; key < KEY_SPACE; key++) {
+                boolean owned = state.striped != null ? state.striped.stripeFor(key) % producers == producer : key % producers == producer;
+
+                if (owned) {
+                    keys.add(key);
+                }
+            }
+
+            this.keys = keys.toArray(new Long[keys.size()]);
+            this.snapshots = new MarketSnapshot[this.keys.length];
+
+            for (int i = 0; i < this.keys.length; i++) {
+                snapshots[i] = createMarketSnapshot(this.keys[i], i, i + 1);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Consumer {
+        public long delivered;
+        final List<MarketSnapshot> bucket = new ArrayList<MarketSnapshot>();
+    }
+
+    @Benchmark
+    @Group("producersAndConsumer")
+    public boolean offer(Buffer state, Producer producer) {
+        int next = producer.next;
+        producer.next = next + 1 == producer.keys.length ? 0 : next + 1;
+
+        if (state.buffer.offer(producer.keys[next], producer.snapshots[next])) {
+            return true;
+        }
+
+        producer.rejected++;
+        return false;
+    }
+
+    @Benchmark
+    @Group("producersAndConsumer")
+    public void poll(Buffer state, Consumer consumer, Blackhole blackhole) {
+        List<MarketSnapshot> bucket = consumer.bucket;
+        int count = state.buffer.poll(bucket);
+
+        for (int i = 0; i < count; i++) {
+            blackhole.consume(bucket.get(i));
+        }
+
+        consumer.delivered += count;
+        bucket.clear();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options commandLine = new CommandLineOptions(args);
+
+        for (int producers : PRODUCER_COUNTS) {
+            Options options = new OptionsBuilder()
+                    .parent(commandLine)
+                    .include(StripedCoalescingBufferBenchmark.class.getSimpleName())
+                    .threadGroups(producers, 1)
+                    .build();
+
+            new Runner(options).run();
+        }
+    }
+
+}
@@ -0,0 +1,353 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer.performance;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Runs the {@link WorkloadTest} in a fresh JVM for every buffer and scenario, so that what one buffer leaves
+ * behind in the JIT, the heap or the caches cannot colour the next one's results, and without needing root:
+ * the JVM is pinned with taskset when it is on the path and the cpus argument is given, and left to the
+ * scheduler otherwise. Arguments are name=value:
+ * <ul>
+ * <li>buffers - comma separated buffer names, all of the LatencyTest's by default</li>
+ * <li>scenarios - comma separated distribution:keys:cost triples, matched as the WorkloadTest matches them</li>
+ * <li>forks - JVMs per buffer and scenario, whose median is reported, 3 by default</li>
+ * <li>seconds and warmups - passed on to the WorkloadTest</li>
+ * <li>cpus - a taskset cpu list such as 1,3</li>
+ * <li>heap - used for both -Xms and -Xmx, 1g by default</li>
+ * <li>jvmArgs - any other JVM flags, space separated, e.g. "-XX:+UseParallelGC -XX:+AlwaysPreTouch"</li>
+ * <li>output - the directory results.csv, results.json and, given a baseline, comparison.csv are written to</li>
+ * <li>baseline - a results.csv from an earlier run to compare against</li>
+ * <li>tolerance - how many percent slower than the baseline a result may be before the runner exits with 1, 5 by default</li>
+ * </ul>
+ */
+public class BenchmarkRunner {
+    private static final String DEFAULT_SCENARIOS =
+            "zipfian:10:fixed,zipfian:1000:fixed,zipfian:100000:fixed,uniform:1000:fixed,hot-set:1000:fixed,bursty:1000:stalls";
+
+    private final Map<String, String> arguments;
+    private final boolean pinned;
+
+    BenchmarkRunner(Map<String, String> arguments) {
+        this.arguments = arguments;
+        this.pinned = arguments.containsKey("cpus") && isOnPath("taskset");
+
+        if (arguments.containsKey("cpus") && !pinned) {
+            System.err.println("taskset is not on the path, running without cpu affinity");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> arguments = new HashMap<String, String>();
+
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+
+            if (equals < 0) {
+                throw new IllegalArgumentException("expected name=value, not " + arg);
+            }
+
+            arguments.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+
+        System.exit(new BenchmarkRunner(arguments).run());
+    }
+
+    int run() throws Exception {
+        int forks = Integer.parseInt(value("forks", "3"));
+        List<Result> results = new ArrayList<Result>();
+
+        for (String buffer : buffers()) {
+            for (String scenario : value("scenarios", DEFAULT_SCENARIOS).split(",")) {
+                Map<String, List<double[]>> samples = new LinkedHashMap<String, List<double[]>>();
+
+                for (int fork = 0; fork < forks; fork++) {
+                    fork(buffer, scenario.split(":"), samples);
+                }
+
+                for (Map.Entry<String, List<double[]>> entry : samples.entrySet()) {
+                    Result result = new Result(entry.getKey(), entry.getValue());
+                    System.out.println(String.format(Locale.ROOT, "%-80s %10.1f mops %12.1f compression", result.key, result.mops, result.compression));
+                    results.add(result);
+                }
+            }
+        }
+
+        File output = new File(value("output", "build/benchmarks"));
+        if (!output.isDirectory() && !output.mkdirs()) {
+            throw new IOException("cannot create " + output);
+        }
+
+        writeCsv(new File(output, "results.csv"), results);
+        writeJson(new File(output, "results.json"), results);
+
+        String baseline = arguments.get("baseline");
+        return baseline == null ? 0 : compare(readCsv(new File(baseline)), results, new File(output, "comparison.csv"));
+    }
+
+    private List<String> buffers() {
+        String buffers = arguments.get("buffers");
+
+        if (buffers != null) {
+            return Arrays.asList(buffers.split(","));
+        }
+
+        List<String> names = new ArrayList<String>();
+        for (Class<?> bufferClass : LatencyTest.BUFFERS) {
+            names.add(bufferClass.getSimpleName());
+        }
+
+        return names;
+    }
+
+    /**
+     * runs one JVM, adding a sample for every result row it prints and passing anything else it prints through
+     */
+    private void fork(String buffer, String[] scenario, Map<String, List<double[]>> samples) throws IOException, InterruptedException {
+        if (scenario.length != 3) {
+            throw new IllegalArgumentException("expected distribution:keys:cost, not " + Arrays.toString(scenario));
+        }
+
+        Process process = new ProcessBuilder(command(buffer, scenario)).redirectErrorStream(true).start();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+
+        try {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(",");
+
+                if (fields.length == 7 && !line.equals(WorkloadTest.CSV_HEADER)) {
+                    String key = fields[0] + "," + fields[1] + "," + fields[2] + "," + fields[3];
+
+                    if (!samples.containsKey(key)) {
+                        samples.put(key, new ArrayList<double[]>());
+                    }
+
+                    samples.get(key).add(new double[]{Double.parseDouble(fields[4]), Double.parseDouble(fields[5]), Double.parseDouble(fields[6])});
+                } else if (!line.equals(WorkloadTest.CSV_HEADER)) {
+                    System.out.println(line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            throw new IllegalStateException(buffer + " " + Arrays.toString(scenario) + " exited with " + exitCode);
+        }
+    }
+
+    private List<String> command(String buffer, String[] scenario) {
+        List<String> command = new ArrayList<String>();
+
+        if (pinned) {
+            command.add("taskset");
+            command.add("-c");
+            command.add(arguments.get("cpus"));
+        }
+
+        String heap = value("heap", "1g");
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-Xms" + heap);
+        command.add("-Xmx" + heap);
+
+        String jvmArgs = value("jvmArgs", "").trim();
+        if (jvmArgs.length() > 0) {
+            command.addAll(Arrays.asList(jvmArgs.split("\\s+")));
+        }
+
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(WorkloadTest.class.getName());
+        command.add("format=csv");
+        command.add("buffer=" + buffer);
+        command.add("distribution=" + scenario[0]);
+        command.add("keys=" + scenario[1]);
+        command.add("cost=" + scenario[2]);
+        command.add("seconds=" + value("seconds", "1"));
+        command.add("warmups=" + value("warmups", "1"));
+        return command;
+    }
+
+    /**
+     * prints and writes every result beside its baseline, and returns 1 if any is slower than the tolerance allows
+     */
+    private int compare(Map<String, Double> baseline, List<Result> results, File file) throws IOException {
+        double tolerance = Double.parseDouble(value("tolerance", "5"));
+        int exitCode = 0;
+        PrintWriter writer = new PrintWriter(file, "UTF-8");
+
+        try {
+            writer.println("buffer,distribution,keys,cost,baseline_mops,mops,change_percent");
+
+            for (Result result : results) {
+                Double baselineMops = baseline.get(result.key);
+
+                if (baselineMops == null) {
+                    System.out.println(String.format("%-80s not in the baseline", result.key));
+                    continue;
+                }
+
+                double change = 100.0 * (result.mops - baselineMops) / baselineMops;
+                boolean regressed = change < -tolerance;
+                exitCode = regressed ? 1 : exitCode;
+
+                System.out.println(String.format(Locale.ROOT, "%-80s %10.1f -> %10.1f mops %+7.1f%%%s", result.key, baselineMops, result.mops, change, regressed ? " REGRESSED" : ""));
+                writer.println(String.format(Locale.ROOT, "%s,%.3f,%.3f,%.3f", result.key, baselineMops, result.mops, change));
+            }
+        } finally {
+            writer.close();
+        }
+
+        return exitCode;
+    }
+
+    private static void writeCsv(File file, List<Result> results) throws IOException {
+        PrintWriter writer = new PrintWriter(file, "UTF-8");
+
+        try {
+            writer.println("buffer,distribution,keys,cost,forks,mops,min_mops,max_mops,compression,rejected_percent");
+
+            for (Result result : results) {
+                writer.println(String.format(Locale.ROOT, "%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f",
+                        result.key, result.forks, result.mops, result.minMops, result.maxMops, result.compression, result.rejectedPercentage));
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void writeJson(File file, List<Result> results) throws IOException {
+        PrintWriter writer = new PrintWriter(file, "UTF-8");
+
+        try {
+            writer.println("[");
+
+            for (int i = 0; i < results.size(); i++) {
+                Result result = results.get(i);
+                String[] fields = result.key.split(",");
+
+                writer.print(String.format(Locale.ROOT,
+                        "  {\"buffer\": \"%s\", \"distribution\": \"%s\", \"keys\": %s, \"cost\": \"%s\", \"forks\": %d, " +
+                        "\"mops\": %.3f, \"minMops\": %.3f, \"maxMops\": %.3f, \"compression\": %.3f, \"rejectedPercent\": %.3f}",
+                        fields[0], fields[1], fields[2], fields[3], result.forks,
+                        result.mops, result.minMops, result.maxMops, result.compression, result.rejectedPercentage));
+                writer.println(i < results.size() - 1 ? "," : "");
+            }
+
+            writer.println("]");
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * the median mops of each row of a results.csv
+     */
+    private static Map<String, Double> readCsv(File file) throws IOException {
+        Map<String, Double> mops = new HashMap<String, Double>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+
+        try {
+            String line = reader.readLine(); // the header
+
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(",");
+                mops.put(fields[0] + "," + fields[1] + "," + fields[2] + "," + fields[3], Double.parseDouble(fields[5]));
+            }
+        } finally {
+            reader.close();
+        }
+
+        return mops;
+    }
+
+    private String value(String name, String defaultValue) {
+        String value = arguments.get(name);
+        return value == null ? defaultValue : value;
+    }
+
+    private static boolean isOnPath(String program) {
+        String path = System.getenv("PATH");
+
+        if (path != null) {
+            for (String directory : path.split(File.pathSeparator)) {
+                if (new File(directory, program).canExecute()) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * the medians over the forks of one buffer and workload
+     */
+    private static final class Result {
+        final String key; // buffer,distribution,keys,cost
+        final int forks;
+        final double mops;
+        final double minMops;
+        final double maxMops;
+        final double compression;
+        final double rejectedPercentage;
+
+        Result(String key, List<double[]> samples) {
+            this.key = key;
+            this.forks = samples.size();
+
+            List<Double> mops = column(samples, 0);
+            this.mops = median(mops);
+            this.minMops = mops.get(0);
+            this.maxMops = mops.get(mops.size() - 1);
+            this.compression = median(column(samples, 1));
+            this.rejectedPercentage = median(column(samples, 2));
+        }
+
+        private static List<Double> column(List<double[]> samples, int index) {
+            List<Double> column = new ArrayList<Double>();
+
+            for (double[] sample : samples) {
+                column.add(sample[index]);
+            }
+
+            Collections.sort(column);
+            return column;
+        }
+
+        private static double median(List<Double> sorted) {
+            int middle = sorted.size() / 2;
+            return sorted.size() % 2 == 1 ? sorted.get(middle) : (sorted.get(middle - 1) + sorted.get(middle)) / 2;
+        }
+    }
+
+}
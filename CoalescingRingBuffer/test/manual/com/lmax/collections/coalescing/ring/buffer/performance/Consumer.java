@@ -20,23 +20,33 @@ import com.lmax.collections.coalescing.ring.buffer.MarketSnapshot;
 import java.util.ArrayList;
 import java.util.List;
 
-import static java.lang.System.nanoTime;
-
 final class Consumer extends Thread {
     private final CoalescingBuffer<Long, MarketSnapshot> buffer;
     private final int numberOfInstruments;
     private final MarketSnapshot poisonPill;
     private final StopWatch stopWatch;
+    private final ConsumerCost cost;
+    private int remainingProducers;
 
     final MarketSnapshot[] latestSnapshots;
     long readCounter;
 
     Consumer(CoalescingBuffer<Long, MarketSnapshot> buffer, int numberOfInstruments, MarketSnapshot poisonPill, StopWatch stopWatch) {
+        this(buffer, numberOfInstruments, poisonPill, stopWatch, 1);
+    }
+
+    Consumer(CoalescingBuffer<Long, MarketSnapshot> buffer, int numberOfInstruments, MarketSnapshot poisonPill, StopWatch stopWatch, int numberOfProducers) {
+        this(buffer, numberOfInstruments, poisonPill, stopWatch, numberOfProducers, ConsumerCost.fixed(10 * 1000));
+    }
+
+    Consumer(CoalescingBuffer<Long, MarketSnapshot> buffer, int numberOfInstruments, MarketSnapshot poisonPill, StopWatch stopWatch, int numberOfProducers, ConsumerCost cost) {
         super("consumer");
         this.buffer = buffer;
         this.numberOfInstruments = numberOfInstruments;
         this.poisonPill = poisonPill;
         this.stopWatch = stopWatch;
+        this.remainingProducers = numberOfProducers;
+        this.cost = cost;
         this.latestSnapshots = new MarketSnapshot[numberOfInstruments];
     }
 
@@ -53,23 +63,20 @@ final class Consumer extends Thread {
 
                 MarketSnapshot snapshot = bucket.get(i);
                 if (snapshot == poisonPill) {
-                    stopWatch.consumerIsDone();
-                    return;
+                    if (--remainingProducers == 0) {
+                        stopWatch.consumerIsDone();
+                        return;
+                    }
+
+                    continue;
                 }
 
                 latestSnapshots[((int) snapshot.getInstrumentId())] = snapshot;
             }
 
-            simulateProcessing();
+            cost.spend();
             bucket.clear();
         }
     }
 
-    private void simulateProcessing() {
-        long sleepUntil = nanoTime() + 10 * 1000;
-        while (nanoTime() < sleepUntil) {
-            // busy spin to simulate processing
-        }
-    }
-
 }
@@ -0,0 +1,91 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer.performance;
+
+import java.util.Random;
+
+import static java.lang.System.nanoTime;
+
+/**
+ * The work the consumer does with each batch it polls, busy spinning so that it stays on its core.
+ */
+abstract class ConsumerCost {
+    private final String name;
+
+    private ConsumerCost(String name) {
+        this.name = name;
+    }
+
+    /**
+     * the original PerformanceTest consumer, which spends the same time on every batch
+     */
+    static ConsumerCost fixed(final long nanos) {
+        return new ConsumerCost("fixed-" + micros(nanos)) {
+            @Override void spend() {
+                spinFor(nanos);
+            }
+        };
+    }
+
+    /**
+     * exponentially distributed times with the given mean, so most batches are cheap and a few are much dearer
+     */
+    static ConsumerCost exponential(final long meanNanos) {
+        return new ConsumerCost("exponential-" + micros(meanNanos)) {
+            private final Random random = new Random(42);
+
+            @Override void spend() {
+                spinFor((long) (-meanNanos * Math.log(1.0 - random.nextDouble())));
+            }
+        };
+    }
+
+    /**
+     * the fixed cost, with a stall of stallNanos once every periodNanos, as a collector's pauses would add
+     */
+    static ConsumerCost stalls(final long nanos, final long periodNanos, final long stallNanos) {
+        return new ConsumerCost("stalls-" + micros(stallNanos)) {
+            private long nextStall = nanoTime() + periodNanos;
+
+            @Override void spend() {
+                spinFor(nanos);
+
+                long now = nanoTime();
+                if (now >= nextStall) {
+                    spinFor(stallNanos);
+                    nextStall = now + periodNanos;
+                }
+            }
+        };
+    }
+
+    abstract void spend();
+
+    private static void spinFor(long nanos) {
+        long spinUntil = nanoTime() + nanos;
+        while (nanoTime() < spinUntil) {
+            // busy spin to simulate processing
+        }
+    }
+
+    private static String micros(long nanos) {
+        return (nanos / 1000) + "us";
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
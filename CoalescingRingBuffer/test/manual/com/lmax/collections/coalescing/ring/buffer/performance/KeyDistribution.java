@@ -0,0 +1,167 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer.performance;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Which of keySpace instruments, numbered from 0, each update is for. The keys are drawn up front into a
+ * sequence the producer cycles through, so neither drawing nor boxing them is measured as the buffer's cost.
+ */
+abstract class KeyDistribution {
+    static final int SEQUENCE_LENGTH = 1 << 20;
+
+    private final String name;
+    final int keySpace;
+
+    private KeyDistribution(String name, int keySpace) {
+        this.name = name;
+        this.keySpace = keySpace;
+    }
+
+    /**
+     * the original PerformanceTest pattern: key i for every update whose counter has i as its lowest set bit,
+     * so each key is updated half as often as the one before
+     */
+    static KeyDistribution skewed(int keySpace) {
+        return new KeyDistribution("skewed", keySpace) {
+            @Override long nextKey(Random random, long counter) {
+                int register = (int) counter;
+
+                for (int i = 0; i < keySpace - 1; i++) {
+                    if ((register & 1) == 1) {
+                        return i;
+                    }
+
+                    register >>= 1;
+                }
+
+                return keySpace - 1;
+            }
+        };
+    }
+
+    static KeyDistribution uniform(int keySpace) {
+        return new KeyDistribution("uniform", keySpace) {
+            @Override long nextKey(Random random, long counter) {
+                return random.nextInt(keySpace);
+            }
+        };
+    }
+
+    /**
+     * key k is updated in proportion to 1 / (k + 1)^exponent, the usual shape of trading activity across instruments
+     */
+    static KeyDistribution zipfian(int keySpace, double exponent) {
+        final double[] cumulative = new double[keySpace];
+        double total = 0;
+
+        for (int k = 0; k < keySpace; k++) {
+            total += 1.0 / Math.pow(k + 1, exponent);
+            cumulative[k] = total;
+        }
+
+        for (int k = 0; k < keySpace; k++) {
+            cumulative[k] /= total;
+        }
+
+        return new KeyDistribution("zipfian", keySpace) {
+            @Override long nextKey(Random random, long counter) {
+                int index = Arrays.binarySearch(cumulative, random.nextDouble());
+                return Math.min(keySpace - 1, index < 0 ? -index - 1 : index);
+            }
+        };
+    }
+
+    /**
+     * hotShare of the updates go to the first hotKeys keys, the rest are spread evenly over the others
+     */
+    static KeyDistribution hotSet(int keySpace, final int hotKeys, final double hotShare) {
+        return new KeyDistribution("hot-set", keySpace) {
+            @Override long nextKey(Random random, long counter) {
+                int hot = Math.min(hotKeys, keySpace);
+
+                if (hot == keySpace || random.nextDouble() < hotShare) {
+                    return random.nextInt(hot);
+                }
+
+                return hot + random.nextInt(keySpace - hot);
+            }
+        };
+    }
+
+    /**
+     * on/off traffic: a run of burstKeys neighbouring keys is switched on for burstLength updates, spread evenly
+     * between them, then off again while another run somewhere else in the key space takes over
+     */
+    static KeyDistribution bursty(int keySpace, final int burstKeys, final int burstLength) {
+        return new KeyDistribution("bursty", keySpace) {
+            private int firstKey;
+            private int remaining; // updates left in the current burst
+
+            @Override KeyDistribution fresh() {
+                return bursty(keySpace, burstKeys, burstLength);
+            }
+
+            @Override long nextKey(Random random, long counter) {
+                int keys = Math.min(burstKeys, keySpace);
+
+                if (remaining-- == 0) {
+                    firstKey = random.nextInt(keySpace - keys + 1);
+                    remaining = burstLength - 1;
+                }
+
+                return firstKey + random.nextInt(keys);
+            }
+        };
+    }
+
+    abstract long nextKey(Random random, long counter);
+
+    /**
+     * a distribution that draws its keys from scratch, for those that carry state from one key to the next
+     */
+    KeyDistribution fresh() {
+        return this;
+    }
+
+    /**
+     * SEQUENCE_LENGTH keys, sharing a single box per key, the same for every call with the same seed
+     */
+    Long[] keys(long seed) {
+        KeyDistribution distribution = fresh();
+        Random random = new Random(seed);
+        Long[] boxes = new Long[keySpace];
+        Long[] keys = new Long[SEQUENCE_LENGTH];
+
+        for (int i = 0; i < SEQUENCE_LENGTH; i++) {
+            int key = (int) distribution.nextKey(random, i + 1);
+
+            if (boxes[key] == null) {
+                boxes[key] = (long) key;
+            }
+
+            keys[i] = boxes[key];
+        }
+
+        return keys;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer.performance;
+
+import com.lmax.collections.coalescing.ring.buffer.CoalescingBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records how stale each value is when it is drained, until the producer is done and the buffer is empty.
+ */
+final class LatencyConsumer extends Thread {
+    private final CoalescingBuffer<Long, TimestampedValue> buffer;
+    private final PacedProducer producer;
+    private final List<TimestampedValue> bucket = new ArrayList<TimestampedValue>(1 << 16);
+    final LatencyHistogram histogram = new LatencyHistogram();
+
+    LatencyConsumer(CoalescingBuffer<Long, TimestampedValue> buffer, PacedProducer producer) {
+        super("latency-consumer");
+        this.buffer = buffer;
+        this.producer = producer;
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            boolean producerIsDone = producer.isDone(); // read first so that nothing offered before it was set is missed
+            int count = buffer.poll(bucket);
+
+            if (count > 0) {
+                long now = System.nanoTime();
+
+                for (int i = 0; i < count; i++) {
+                    histogram.record(now - bucket.get(i).timestamp);
+                }
+
+                bucket.clear();
+            } else if (producerIsDone) {
+                return;
+            }
+        }
+    }
+}
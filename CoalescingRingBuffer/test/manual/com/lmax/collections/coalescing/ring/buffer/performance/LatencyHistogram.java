@@ -0,0 +1,92 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer.performance;
+
+import java.util.Arrays;
+
+/**
+ * A log-linear histogram of positive longs: exact below 128, then 64 linear buckets per power of two,
+ * so every recorded value is reported within 1.6% of itself. Recording never allocates.
+ * Not thread safe, it belongs to whichever thread records into it.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT >> 1;
+
+    private final long[] counts = new long[index(Long.MAX_VALUE) + 1];
+    private long totalCount;
+    private long maxValue;
+
+    void record(long value) {
+        long clamped = Math.max(0, value); // nanoTime is only monotonic per core on some platforms
+
+        counts[index(clamped)]++;
+        totalCount++;
+        maxValue = Math.max(maxValue, clamped);
+    }
+
+    long count() {
+        return totalCount;
+    }
+
+    long max() {
+        return maxValue;
+    }
+
+    /**
+     * returns the highest value that falls in the same bucket as the value at the percentile
+     */
+    long valueAtPercentile(double percentile) {
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long seen = 0;
+
+        for (int index = 0; index < counts.length; index++) {
+            seen += counts[index];
+
+            if (seen >= target) {
+                return Math.min(highestValueIn(index), maxValue);
+            }
+        }
+
+        return maxValue;
+    }
+
+    void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        maxValue = 0;
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKET_HALF_COUNT + (int) (value >>> shift);
+    }
+
+    private static long highestValueIn(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        int shift = index / SUB_BUCKET_HALF_COUNT - 1;
+        long lowestValue = (long) (index - shift * SUB_BUCKET_HALF_COUNT) << shift;
+        return lowestValue + (1L << shift) - 1;
+    }
+
+}
@@ -0,0 +1,115 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer.performance;
+
+import com.lmax.collections.coalescing.ring.buffer.CoalescingArrayBuffer;
+import com.lmax.collections.coalescing.ring.buffer.CoalescingBuffer;
+import com.lmax.collections.coalescing.ring.buffer.CoalescingCasBuffer;
+import com.lmax.collections.coalescing.ring.buffer.CoalescingGrowableRingBuffer;
+import com.lmax.collections.coalescing.ring.buffer.CoalescingIndexedRingBuffer;
+import com.lmax.collections.coalescing.ring.buffer.CoalescingMultiWriterBuffer;
+import com.lmax.collections.coalescing.ring.buffer.CoalescingPaddedRingBuffer;
+import com.lmax.collections.coalescing.ring.buffer.CoalescingPaddedSingleWriterBuffer;
+import com.lmax.collections.coalescing.ring.buffer.CoalescingPowerOfTwoBuffer;
+import com.lmax.collections.coalescing.ring.buffer.CoalescingRingBuffer;
+import com.lmax.collections.coalescing.ring.buffer.CoalescingSingleWriterBuffer;
+import com.lmax.collections.coalescing.ring.buffer.CoalescingSynchronizedBuffer;
+import com.lmax.collections.coalescing.ring.buffer.CoalescingVarHandleRingBuffer;
+
+/**
+ * Measures how stale a value is by the time the consumer sees it, for each buffer at several offered rates.
+ * Pass a duration in seconds to change how long each rate is measured for.
+ */
+public class LatencyTest {
+    private static final long SATURATION = 0;
+    private static final long[] UPDATES_PER_SECOND = {100 * 1000, 1000 * 1000, 10 * 1000 * 1000, SATURATION};
+    private static final int NUMBER_OF_INSTRUMENTS = 10;
+    private static final int CAPACITY = 1 << 20;
+    private static final long NANOS_PER_SECOND = 1000L * 1000L * 1000L;
+
+    static final Class<?>[] BUFFERS = {
+            CoalescingRingBuffer.class,
+            CoalescingGrowableRingBuffer.class,
+            CoalescingVarHandleRingBuffer.class,
+            CoalescingIndexedRingBuffer.class,
+            CoalescingPaddedRingBuffer.class,
+            CoalescingPaddedSingleWriterBuffer.class,
+            CoalescingMultiWriterBuffer.class,
+            CoalescingSingleWriterBuffer.class,
+            CoalescingPowerOfTwoBuffer.class,
+            CoalescingArrayBuffer.class,
+            CoalescingSynchronizedBuffer.class,
+            CoalescingCasBuffer.class
+    };
+
+    private final Class<?> bufferClass;
+    private final long updatesPerSecond;
+    private final long durationNanos;
+
+    public LatencyTest(Class<?> bufferClass, long updatesPerSecond, long durationNanos) {
+        this.bufferClass = bufferClass;
+        this.updatesPerSecond = updatesPerSecond;
+        this.durationNanos = durationNanos;
+    }
+
+    public LatencyHistogram run() throws Exception {
+        CoalescingBuffer<Long, TimestampedValue> buffer = createBuffer(bufferClass);
+        PacedProducer producer = new PacedProducer(buffer, NUMBER_OF_INSTRUMENTS, updatesPerSecond, durationNanos);
+        LatencyConsumer consumer = new LatencyConsumer(buffer, producer);
+
+        System.gc();
+        consumer.start();
+        producer.start();
+        consumer.join();
+
+        return consumer.histogram;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CoalescingBuffer<Long, TimestampedValue> createBuffer(Class<?> bufferClass) throws Exception {
+        return (CoalescingBuffer<Long, TimestampedValue>) bufferClass.getConstructor(int.class).newInstance(CAPACITY);
+    }
+
+    public static void main(String[] args) throws Exception {
+        long durationNanos = (args.length > 0 ? Long.parseLong(args[0]) : 2) * NANOS_PER_SECOND;
+
+        System.out.println(String.format("%-36s %12s %12s %10s %10s %10s %10s", "buffer", "rate (/s)", "delivered", "p50 (us)", "p99 (us)", "p99.9 (us)", "max (us)"));
+
+        for (Class<?> bufferClass : BUFFERS) {
+            new LatencyTest(bufferClass, SATURATION, durationNanos / 2).run(); // warm up
+
+            for (long updatesPerSecond : UPDATES_PER_SECOND) {
+                LatencyHistogram histogram = new LatencyTest(bufferClass, updatesPerSecond, durationNanos).run();
+                print(bufferClass, updatesPerSecond, histogram);
+            }
+        }
+    }
+
+    private static void print(Class<?> bufferClass, long updatesPerSecond, LatencyHistogram histogram) {
+        System.out.println(String.format("%-36s %12s %12d %10.1f %10.1f %10.1f %10.1f",
+                bufferClass.getSimpleName(),
+                updatesPerSecond == SATURATION ? "saturated" : String.valueOf(updatesPerSecond),
+                histogram.count(),
+                micros(histogram.valueAtPercentile(50)),
+                micros(histogram.valueAtPercentile(99)),
+                micros(histogram.valueAtPercentile(99.9)),
+                micros(histogram.max())));
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+
+}
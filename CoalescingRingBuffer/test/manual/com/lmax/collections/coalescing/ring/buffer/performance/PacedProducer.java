@@ -0,0 +1,79 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer.performance;
+
+import com.lmax.collections.coalescing.ring.buffer.CoalescingBuffer;
+
+/**
+ * Offers round robin updates at a fixed rate, or as fast as it can when the rate is 0, for a fixed time.
+ * Each value is stamped with the time it was scheduled rather than the time it was sent, so time spent
+ * behind schedule or retrying a full buffer is counted as latency too.
+ */
+final class PacedProducer extends Thread {
+    private static final int POOL_SIZE = 1 << 20; // far more than can be pending, so a value is never restamped while the consumer might still see it
+
+    private final CoalescingBuffer<Long, TimestampedValue> buffer;
+    private final Long[] keys;
+    private final TimestampedValue[] pool = new TimestampedValue[POOL_SIZE];
+    private final long intervalNanos;
+    private final long durationNanos;
+    private volatile boolean done;
+
+    PacedProducer(CoalescingBuffer<Long, TimestampedValue> buffer, int numberOfInstruments, long updatesPerSecond, long durationNanos) {
+        super("paced-producer");
+        this.buffer = buffer;
+        this.intervalNanos = updatesPerSecond == 0 ? 0 : 1000L * 1000L * 1000L / updatesPerSecond;
+        this.durationNanos = durationNanos;
+        this.keys = new Long[numberOfInstruments];
+
+        for (int i = 0; i < numberOfInstruments; i++) {
+            keys[i] = (long) i;
+        }
+
+        for (int i = 0; i < POOL_SIZE; i++) {
+            pool[i] = new TimestampedValue();
+        }
+    }
+
+    @Override
+    public void run() {
+        long now = System.nanoTime();
+        long endTime = now + durationNanos;
+        long scheduledTime = now;
+
+        for (long counter = 0; now < endTime; counter++) {
+            while (now < scheduledTime) {
+                now = System.nanoTime();
+            }
+
+            TimestampedValue value = pool[((int) counter) & (POOL_SIZE - 1)];
+            value.timestamp = intervalNanos == 0 ? now : scheduledTime;
+            Long key = keys[(int) (counter % keys.length)];
+
+            while (!buffer.offer(key, value)) {
+                // full, keep trying
+            }
+
+            scheduledTime += intervalNanos;
+            now = System.nanoTime();
+        }
+
+        done = true;
+    }
+
+    boolean isDone() {
+        return done;
+    }
+}
@@ -15,7 +15,9 @@
 package com.lmax.collections.coalescing.ring.buffer.performance;
 
 import com.lmax.collections.coalescing.ring.buffer.CoalescingBuffer;
-import com.lmax.collections.coalescing.ring.buffer.CoalescingBufferFactory;
+import com.lmax.collections.coalescing.ring.buffer.CoalescingMultiWriterBuffer;
+import com.lmax.collections.coalescing.ring.buffer.CoalescingRingBuffer;
+import com.lmax.collections.coalescing.ring.buffer.CoalescingVarHandleRingBuffer;
 import com.lmax.collections.coalescing.ring.buffer.MarketSnapshot;
 
 import static com.lmax.collections.coalescing.ring.buffer.MarketSnapshot.createMarketSnapshot;
@@ -26,25 +28,34 @@ public class PerformanceTest {
     private static final int NUMBER_OF_INSTRUMENTS = 10;
     private static final int SECONDS = 1000;
 
+    private static final int[] MULTI_WRITER_PRODUCER_COUNTS = {2, 4, 8};
+
     private final CoalescingBuffer<Long, MarketSnapshot> buffer;
 	private final long numberOfUpdates;
+    private final int numberOfProducers;
 
 	public PerformanceTest(CoalescingBuffer<Long, MarketSnapshot> buffer, long numberOfUpdates) {
-		this.buffer = buffer;
-		this.numberOfUpdates = numberOfUpdates;
+		this(buffer, numberOfUpdates, 1);
 	}
 
+    public PerformanceTest(CoalescingBuffer<Long, MarketSnapshot> buffer, long numberOfUpdates, int numberOfProducers) {
+        this.buffer = buffer;
+        this.numberOfUpdates = numberOfUpdates;
+        this.numberOfProducers = numberOfProducers;
+    }
+
 	public long run() throws InterruptedException {
 		gc();
-		System.out.println("testing " + buffer.getClass() + " with " + numberOfUpdates + " updates...");
-        StopWatch stopWatch = new StopWatch();
-
-        Producer producer = new Producer(buffer, NUMBER_OF_INSTRUMENTS, numberOfUpdates, POISON_PILL, stopWatch);
-		Consumer consumer = new Consumer(buffer, NUMBER_OF_INSTRUMENTS, POISON_PILL, stopWatch);
+		System.out.println("testing " + buffer.getClass() + " with " + numberOfUpdates + " updates from " + numberOfProducers + " producer(s)...");
+        StopWatch stopWatch = new StopWatch(numberOfProducers);
 
-		producer.start();
+		Consumer consumer = new Consumer(buffer, NUMBER_OF_INSTRUMENTS, POISON_PILL, stopWatch, numberOfProducers);
 		consumer.start();
 
+        for (int i = 0; i < numberOfProducers; i++) {
+            new Producer(buffer, NUMBER_OF_INSTRUMENTS, numberOfUpdates / numberOfProducers, POISON_PILL, stopWatch, i).start();
+        }
+
 		consumer.join();
 
         return computeAndPrintResults(consumer, stopWatch.nanosTaken());
@@ -73,26 +84,47 @@ public class PerformanceTest {
         return Math.round(megaOpsPerSecond);
 	}
 
+    /**
+     * pass "multi-writer" to measure the multi producer buffer with 2, 4 and 8 producers,
+     * or "var-handle" to measure the VarHandle ring in place of the default buffer
+     */
 	public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("multi-writer")) {
+            for (int numberOfProducers : MULTI_WRITER_PRODUCER_COUNTS) {
+                runUntilResultsAreStable(CoalescingMultiWriterBuffer.class, numberOfProducers);
+            }
+        } else if (args.length > 0 && args[0].equals("var-handle")) {
+            runUntilResultsAreStable(CoalescingVarHandleRingBuffer.class, 1);
+        } else {
+            runUntilResultsAreStable(CoalescingRingBuffer.class, 1);
+        }
+	}
+
+    private static void runUntilResultsAreStable(Class<?> bufferClass, int numberOfProducers) throws Exception {
         long[] results = new long[3];
         int runNumber = 1;
 
         do {
-            long result = run(runNumber++, 1000 * MILLION);
+            long result = run(runNumber++, 1000 * MILLION, bufferClass, numberOfProducers);
             update(results, result);
             Thread.sleep(5 * SECONDS);
 
         } while (!areAllResultsTheSame(results));
-	}
+    }
 
-    private static long run(int runNumber, long numberOfUpdates) throws InterruptedException {
-        CoalescingBuffer<Long, MarketSnapshot> buffer = CoalescingBufferFactory.create(1 << 20);
-        PerformanceTest test = new PerformanceTest(buffer, numberOfUpdates);
+    private static long run(int runNumber, long numberOfUpdates, Class<?> bufferClass, int numberOfProducers) throws Exception {
+        CoalescingBuffer<Long, MarketSnapshot> buffer = createBuffer(bufferClass);
+        PerformanceTest test = new PerformanceTest(buffer, numberOfUpdates, numberOfProducers);
 
         System.out.println("\n======================================= run " + runNumber + " =======================================\n");
         return test.run();
     }
 
+    @SuppressWarnings("unchecked")
+    private static CoalescingBuffer<Long, MarketSnapshot> createBuffer(Class<?> bufferClass) throws Exception {
+        return (CoalescingBuffer<Long, MarketSnapshot>) bufferClass.getConstructor(int.class).newInstance(1 << 20);
+    }
+
     private static void update(long[] results, long result) {
         System.arraycopy(results, 1, results, 0, results.length - 1);
         results[results.length - 1] = result;
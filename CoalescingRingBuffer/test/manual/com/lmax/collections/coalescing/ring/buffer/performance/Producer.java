@@ -27,16 +27,24 @@ final class Producer extends Thread {
     private final StopWatch stopWatch;
     private final int numberOfInstruments;
     private final MarketSnapshot[] snapshots;
+    private final Long[] keys;
+    private final int producerIndex;
     private int nextSnapshot;
 
     Producer(CoalescingBuffer<Long, MarketSnapshot> buffer, int numberOfInstruments, long numberOfUpdates, MarketSnapshot poisonPill, StopWatch stopWatch) {
-        super("producer");
+        this(buffer, numberOfInstruments, numberOfUpdates, poisonPill, stopWatch, 0);
+    }
+
+    Producer(CoalescingBuffer<Long, MarketSnapshot> buffer, int numberOfInstruments, long numberOfUpdates, MarketSnapshot poisonPill, StopWatch stopWatch, int producerIndex) {
+        super("producer-" + producerIndex);
         this.buffer = buffer;
+        this.producerIndex = producerIndex;
         this.numberOfInstruments = numberOfInstruments;
         this.numberOfUpdates = numberOfUpdates;
         this.poisonPill = poisonPill;
         this.stopWatch = stopWatch;
         this.snapshots = createSnapshots(numberOfInstruments);
+        this.keys = KeyDistribution.skewed(numberOfInstruments).keys(producerIndex);
     }
 
     private MarketSnapshot[] createSnapshots(int numberOfInstruments) {
@@ -57,27 +65,10 @@ final class Producer extends Thread {
         stopWatch.producerIsReady();
 
         for (long i = 1; i <= numberOfUpdates; i++) {
-            put(nextId(i), nextSnapshot());
-        }
-
-        put(poisonPill.getInstrumentId(), poisonPill);
-    }
-
-    /**
-     * simulates some instruments update much more frequently than others
-     */
-    private long nextId(long counter) {
-        int register = (int) counter;
-
-        for (int i = 1; i < numberOfInstruments; i++) {
-            if ((register & 1) == 1) {
-                return i;
-            }
-
-            register >>= 1;
+            put(keys[(int) i & (KeyDistribution.SEQUENCE_LENGTH - 1)], nextSnapshot());
         }
 
-        return numberOfInstruments;
+        put(poisonPill.getInstrumentId() - producerIndex, poisonPill); // a pill per producer so that they do not collapse
     }
 
     private MarketSnapshot nextSnapshot() {
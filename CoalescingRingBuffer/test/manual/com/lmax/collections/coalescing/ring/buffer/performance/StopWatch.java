@@ -17,10 +17,18 @@ package com.lmax.collections.coalescing.ring.buffer.performance;
 import java.util.concurrent.CountDownLatch;
 
 final class StopWatch {
-    private final CountDownLatch startingGate = new CountDownLatch(2);
+    private final CountDownLatch startingGate;
     private volatile long startTime;
     private volatile long endTime;
 
+    StopWatch() {
+        this(1);
+    }
+
+    StopWatch(int numberOfProducers) {
+        this.startingGate = new CountDownLatch(numberOfProducers + 1);
+    }
+
     void consumerIsReady() {
         awaitStart();
     }
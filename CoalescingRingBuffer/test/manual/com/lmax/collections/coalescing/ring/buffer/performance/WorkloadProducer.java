@@ -0,0 +1,77 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer.performance;
+
+import com.lmax.collections.coalescing.ring.buffer.CoalescingBuffer;
+import com.lmax.collections.coalescing.ring.buffer.MarketSnapshot;
+
+import static com.lmax.collections.coalescing.ring.buffer.MarketSnapshot.createMarketSnapshot;
+
+/**
+ * Offers as fast as it can, for a fixed time rather than a fixed count, since with a large key space
+ * the scanning buffers can be orders of magnitude slower than with the ten instruments of the PerformanceTest.
+ * A full buffer is not an error here, the offer is counted as rejected and the producer moves on.
+ */
+final class WorkloadProducer extends Thread {
+    private static final int CLOCK_CHECK_INTERVAL = 1 << 10; // reading the clock on every offer would cost more than some offers
+
+    private final CoalescingBuffer<Long, MarketSnapshot> buffer;
+    private final Long[] keys;
+    private final MarketSnapshot[] snapshots;
+    private final MarketSnapshot poisonPill;
+    private final StopWatch stopWatch;
+    private final long durationNanos;
+
+    long offered;
+    long rejected;
+
+    WorkloadProducer(CoalescingBuffer<Long, MarketSnapshot> buffer, KeyDistribution distribution, long durationNanos, MarketSnapshot poisonPill, StopWatch stopWatch) {
+        super("workload-producer");
+        this.buffer = buffer;
+        this.keys = distribution.keys(42);
+        this.snapshots = new MarketSnapshot[distribution.keySpace];
+        this.durationNanos = durationNanos;
+        this.poisonPill = poisonPill;
+        this.stopWatch = stopWatch;
+
+        for (int i = 0; i < snapshots.length; i++) {
+            snapshots[i] = createMarketSnapshot(i, i, i + 1);
+        }
+    }
+
+    @Override
+    public void run() {
+        stopWatch.producerIsReady();
+        long endTime = System.nanoTime() + durationNanos;
+
+        for (int i = 0; ; i++) {
+            if ((i & (CLOCK_CHECK_INTERVAL - 1)) == 0 && System.nanoTime() >= endTime) {
+                break;
+            }
+
+            Long key = keys[i & (KeyDistribution.SEQUENCE_LENGTH - 1)];
+
+            if (buffer.offer(key, snapshots[key.intValue()])) {
+                offered++;
+            } else {
+                rejected++;
+            }
+        }
+
+        while (!buffer.offer(poisonPill.getInstrumentId(), poisonPill)) {
+            // full, keep trying
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lmax.collections.coalescing.ring.buffer.performance;
+
+import com.lmax.collections.coalescing.ring.buffer.CoalescingBuffer;
+import com.lmax.collections.coalescing.ring.buffer.MarketSnapshot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static com.lmax.collections.coalescing.ring.buffer.MarketSnapshot.createMarketSnapshot;
+
+/**
+ * Measures every buffer against every workload: how the keys are distributed, how many of them there are
+ * and what the consumer costs. Rows for the same buffer, distribution and cost come out together in key space
+ * order, so each group reads as a throughput and compression ratio curve over the size of the key space.
+ * <p>
+ * Every dimension is swept unless narrowed by an argument, e.g.
+ * <pre>
+ *     WorkloadTest seconds=2 buffer=CoalescingRingBuffer distribution=zipfian keys=1000 cost=fixed
+ * </pre>
+ * where a buffer, distribution or cost matches on the start of its name. Add warmups=n to change how many
+ * half length runs warm each buffer up, and format=csv for rows a program can read, as the BenchmarkRunner does.
+ */
+public class WorkloadTest {
+    private static final int CAPACITY = 1 << 20; // above the largest key space, so coalescing rather than rejection is measured
+    private static final int[] KEY_SPACES = {10, 1000, 100 * 1000, 1000 * 1000};
+    private static final long NANOS_PER_SECOND = 1000L * 1000L * 1000L;
+    private static final long MICROS = 1000L;
+    private static final long MILLIS = 1000L * 1000L;
+
+    static final String CSV_HEADER = "buffer,distribution,keys,cost,mops,compression,rejected_percent";
+
+    private final Class<?> bufferClass;
+    private final KeyDistribution distribution;
+    private final ConsumerCost cost;
+    private final long durationNanos;
+
+    public WorkloadTest(Class<?> bufferClass, KeyDistribution distribution, ConsumerCost cost, long durationNanos) {
+        this.bufferClass = bufferClass;
+        this.distribution = distribution;
+        this.cost = cost;
+        this.durationNanos = durationNanos;
+    }
+
+    static List<KeyDistribution> distributions(int keySpace) {
+        int hotKeys = Math.max(1, keySpace / 100);
+
+        List<KeyDistribution> distributions = new ArrayList<KeyDistribution>();
+        distributions.add(KeyDistribution.uniform(keySpace));
+        distributions.add(KeyDistribution.zipfian(keySpace, 1.0));
+        distributions.add(KeyDistribution.hotSet(keySpace, hotKeys, 0.9));
+        distributions.add(KeyDistribution.bursty(keySpace, hotKeys, 10 * 1000));
+        distributions.add(KeyDistribution.skewed(keySpace));
+        return distributions;
+    }
+
+    static List<ConsumerCost> costs() {
+        List<ConsumerCost> costs = new ArrayList<ConsumerCost>();
+        costs.add(ConsumerCost.fixed(10 * MICROS));
+        costs.add(ConsumerCost.exponential(10 * MICROS));
+        costs.add(ConsumerCost.stalls(10 * MICROS, 100 * MILLIS, 20 * MILLIS));
+        return costs;
+    }
+
+    public Result run() throws Exception {
+        CoalescingBuffer<Long, MarketSnapshot> buffer = createBuffer(bufferClass);
+        MarketSnapshot poisonPill = createMarketSnapshot(-1, -1, -1);
+        StopWatch stopWatch = new StopWatch();
+
+        WorkloadProducer producer = new WorkloadProducer(buffer, distribution, durationNanos, poisonPill, stopWatch);
+        Consumer consumer = new Consumer(buffer, distribution.keySpace, poisonPill, stopWatch, 1, cost);
+
+        System.gc();
+        consumer.start();
+        producer.start();
+        producer.join();
+        consumer.join();
+
+        return new Result(producer.offered, producer.rejected, consumer.readCounter - 1, stopWatch.nanosTaken()); // less the poison pill
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CoalescingBuffer<Long, MarketSnapshot> createBuffer(Class<?> bufferClass) throws Exception {
+        return (CoalescingBuffer<Long, MarketSnapshot>) bufferClass.getConstructor(int.class).newInstance(CAPACITY);
+    }
+
+    static final class Result {
+        final long offered;
+        final long rejected;
+        final long delivered;
+        final long nanosTaken;
+
+        Result(long offered, long rejected, long delivered, long nanosTaken) {
+            this.offered = offered;
+            this.rejected = rejected;
+            this.delivered = delivered;
+            this.nanosTaken = nanosTaken;
+        }
+
+        double megaOpsPerSecond() {
+            return (1000.0 * offered) / nanosTaken;
+        }
+
+        double compressionRatio() {
+            return delivered == 0 ? 0 : (1.0 * offered) / delivered;
+        }
+
+        double rejectedPercentage() {
+            return offered + rejected == 0 ? 0 : (100.0 * rejected) / (offered + rejected);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> filters = parse(args);
+        long durationNanos = (long) (Double.parseDouble(value(filters, "seconds", "1")) * NANOS_PER_SECOND);
+        int warmups = Integer.parseInt(value(filters, "warmups", "1"));
+        boolean csv = value(filters, "format", "table").equals("csv");
+
+        List<List<KeyDistribution>> distributionsByKeySpace = new ArrayList<List<KeyDistribution>>();
+        for (int keySpace : KEY_SPACES) {
+            distributionsByKeySpace.add(distributions(keySpace));
+        }
+
+        if (csv) {
+            System.out.println(CSV_HEADER);
+        } else {
+            System.out.println(String.format("%-36s %-12s %10s %-18s %10s %12s %10s", "buffer", "distribution", "keys", "cost", "mops", "compression", "rejected %"));
+        }
+
+        for (Class<?> bufferClass : LatencyTest.BUFFERS) {
+            if (!matches(filters, "buffer", bufferClass.getSimpleName())) {
+                continue;
+            }
+
+            for (int warmup = 0; warmup < warmups; warmup++) {
+                new WorkloadTest(bufferClass, KeyDistribution.skewed(10), ConsumerCost.fixed(10 * MICROS), durationNanos / 2).run();
+            }
+
+            for (int i = 0; i < distributionsByKeySpace.get(0).size(); i++) {
+                for (ConsumerCost cost : costs()) {
+                    for (List<KeyDistribution> distributions : distributionsByKeySpace) {
+                        KeyDistribution distribution = distributions.get(i);
+
+                        if (matches(filters, "distribution", distribution.toString())
+                                && matches(filters, "cost", cost.toString())
+                                && matches(filters, "keys", String.valueOf(distribution.keySpace))) {
+                            Result result = new WorkloadTest(bufferClass, distribution, cost, durationNanos).run();
+                            print(bufferClass, distribution, cost, result, csv);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> filters = new HashMap<String, String>();
+
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+
+            if (equals < 0) {
+                throw new IllegalArgumentException("expected name=value, not " + arg);
+            }
+
+            filters.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+
+        return filters;
+    }
+
+    private static String value(Map<String, String> filters, String name, String defaultValue) {
+        String value = filters.get(name);
+        return value == null ? defaultValue : value;
+    }
+
+    private static boolean matches(Map<String, String> filters, String name, String value) {
+        String filter = filters.get(name);
+        return filter == null || (name.equals("keys") ? value.equals(filter) : value.startsWith(filter));
+    }
+
+    private static void print(Class<?> bufferClass, KeyDistribution distribution, ConsumerCost cost, Result result, boolean csv) {
+        System.out.println(String.format(Locale.ROOT, csv ? "%s,%s,%d,%s,%.3f,%.3f,%.3f" : "%-36s %-12s %10d %-18s %10.1f %12.1f %10.1f",
+                bufferClass.getSimpleName(),
+                distribution,
+                distribution.keySpace,
+                cost,
+                result.megaOpsPerSecond(),
+                result.compressionRatio(),
+                result.rejectedPercentage()));
+    }
+
+}